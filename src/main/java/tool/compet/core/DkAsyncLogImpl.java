@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log printer. Caller thread only puts log record into a pre-allocated
+ * lock-free ring buffer, and a background thread passes records to the delegate printer.
+ *
+ * Producers claim slots by CAS on a shared cursor, and publish a slot by writing its sequence,
+ * so the single consumer never reads half-written records (like Disruptor multi-producer).
+ */
+public class DkAsyncLogImpl implements DkLogger.LogImpl {
+	/**
+	 * When buffer is full, caller waits until consumer frees a slot.
+	 */
+	public static final int OVERFLOW_BLOCK = 1;
+
+	/**
+	 * When buffer is full, new log is dropped.
+	 */
+	public static final int OVERFLOW_DROP = 2;
+
+	/**
+	 * When buffer is full, debug logs (debug, info, notice) are dropped, other logs are blocked.
+	 */
+	public static final int OVERFLOW_DROP_DEBUG = 3;
+
+	private final DkLogger.LogImpl delegate;
+	private final int overflowPolicy;
+	private final int mask;
+
+	// Pre-allocated slots, `published[i]` is sequence of the record which was written at slot `i`
+	private final AtomicLongArray published;
+	private final int[] logTypes;
+	private final String[] messages;
+
+	// Next sequence which producer will claim
+	private final AtomicLong claimCursor = new AtomicLong();
+
+	// Next sequence which consumer will read, all before it were taken out of buffer
+	private volatile long consumeCursor;
+
+	// All sequences before it were printed
+	private volatile long printCursor;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+	private long reportedDroppedCount;
+
+	private final Thread consumer;
+	private volatile boolean consumerParked;
+
+	// After closed, consumer stops when all claimed records were printed, and new logs are printed on caller thread
+	private volatile boolean closed;
+
+	/**
+	 * @param delegate Actual printer, it is called on background thread.
+	 * @param capacity Number of slots, will be rounded up to power of 2.
+	 * @param overflowPolicy One of `OVERFLOW_*`.
+	 */
+	public DkAsyncLogImpl(@NonNull DkLogger.LogImpl delegate, int capacity, int overflowPolicy) {
+		capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+		this.delegate = delegate;
+		this.overflowPolicy = overflowPolicy;
+		this.mask = capacity - 1;
+		this.published = new AtomicLongArray(capacity);
+		this.logTypes = new int[capacity];
+		this.messages = new String[capacity];
+
+		// Mark all slots as not-yet-published
+		for (int index = 0; index < capacity; ++index) {
+			this.published.lazySet(index, -1);
+		}
+
+		this.consumer = new Thread(this::consumeLoop, "dklog-async");
+		this.consumer.setDaemon(true);
+		this.consumer.start();
+	}
+
+	@Override
+	public void log(int logType, String message) {
+		final long capacity = mask + 1;
+		long sequence;
+
+		// Claim a slot
+		while (true) {
+			if (closed) {
+				printSafely(logType, message);
+				return;
+			}
+
+			sequence = claimCursor.get();
+
+			if (sequence - consumeCursor >= capacity) {
+				if (overflowPolicy == OVERFLOW_DROP || (overflowPolicy == OVERFLOW_DROP_DEBUG && logType < DkLogger.LogType.TYPE_WARNING)) {
+					droppedCount.incrementAndGet();
+					return;
+				}
+				// Wait for consumer
+				unparkConsumer();
+				LockSupport.parkNanos(1000);
+				continue;
+			}
+			if (claimCursor.compareAndSet(sequence, sequence + 1)) {
+				break;
+			}
+		}
+
+		// Write and publish
+		final int index = (int) sequence & mask;
+		logTypes[index] = logType;
+		messages[index] = message;
+		published.set(index, sequence);
+
+		if (consumerParked) {
+			unparkConsumer();
+		}
+	}
+
+	/**
+	 * Wait until all logs which were put before this call are printed.
+	 * Should be called at crash path, or before app exits.
+	 *
+	 * @return TRUE if all logs were printed before timeout.
+	 */
+	public boolean flush(long timeout, TimeUnit unit) {
+		final long target = claimCursor.get();
+		final long deadline = DkParallels.calcDeadline(timeout, unit);
+
+		while (printCursor < target) {
+			if (DkParallels.remainNanos(deadline) <= 0) {
+				return false;
+			}
+			unparkConsumer();
+			LockSupport.parkNanos(10_000);
+		}
+		return true;
+	}
+
+	/**
+	 * Print pending logs, then stop background thread. After this, logs are printed on caller thread.
+	 *
+	 * @return TRUE if all pending logs were printed before timeout.
+	 */
+	public boolean close(long timeout, TimeUnit unit) {
+		closed = true;
+		return flush(timeout, unit);
+	}
+
+	/**
+	 * @return Number of logs which were dropped since buffer was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	private void unparkConsumer() {
+		LockSupport.unpark(consumer);
+	}
+
+	private void consumeLoop() {
+		final AtomicLongArray published = this.published;
+		final int[] logTypes = this.logTypes;
+		final String[] messages = this.messages;
+		long sequence = consumeCursor;
+
+		while (true) {
+			final int index = (int) sequence & mask;
+
+			if (published.get(index) != sequence) {
+				reportDropped();
+
+				// All claimed records were printed, new logs will not come to buffer
+				if (closed && claimCursor.get() == sequence) {
+					return;
+				}
+
+				// Nothing to print, sleep until producer wakes us up (re-check after mark parked to not miss signal)
+				consumerParked = true;
+				if (published.get(index) != sequence) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+				}
+				consumerParked = false;
+				continue;
+			}
+
+			final int logType = logTypes[index];
+			final String message = messages[index];
+			messages[index] = null;
+
+			// Free the slot before print, so producer can reuse it soon
+			consumeCursor = ++sequence;
+
+			printSafely(logType, message);
+			printCursor = sequence;
+		}
+	}
+
+	private void reportDropped() {
+		long dropped = droppedCount.get();
+		if (dropped != reportedDroppedCount) {
+			printSafely(DkLogger.LogType.TYPE_WARNING, "Dropped " + (dropped - reportedDroppedCount) + " logs since buffer was full");
+			reportedDroppedCount = dropped;
+		}
+	}
+
+	private void printSafely(int logType, String message) {
+		try {
+			delegate.log(logType, message);
+		}
+		catch (Throwable e) {
+			// Printer must not kill consumer thread
+			System.err.println("dklog_async: Could not print log: " + e);
+		}
+	}
+}
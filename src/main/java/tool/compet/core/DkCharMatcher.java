@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Precompiled set of chars, build it once and reuse for trimming, splitting...
+ * ASCII chars are checked with a 128-bit bitmap, other chars with binary search on sorted array.
+ */
+public class DkCharMatcher {
+	// Matches whitespace only (same as `Character.isWhitespace()`)
+	public static final DkCharMatcher WHITESPACE = new DkCharMatcher(true, null);
+
+	// Bitmap of ASCII chars: bit i of `low` for char i < 64, bit (i - 64) of `high` for char 64 <= i < 128
+	private final long low;
+	private final long high;
+
+	// Sorted non-ASCII chars
+	private final char[] others;
+
+	// Also match non-ASCII whitespace
+	private final boolean whitespace;
+
+	/**
+	 * @return Matcher of given chars.
+	 */
+	@NonNull
+	public static DkCharMatcher of(@Nullable char... chars) {
+		return new DkCharMatcher(false, chars);
+	}
+
+	/**
+	 * @return Matcher of whitespace (same as `Character.isWhitespace()`) and given chars.
+	 */
+	@NonNull
+	public static DkCharMatcher whitespaceOr(@Nullable char... chars) {
+		return chars == null || chars.length == 0 ? WHITESPACE : new DkCharMatcher(true, chars);
+	}
+
+	private DkCharMatcher(boolean whitespace, char[] chars) {
+		long low = 0, high = 0;
+		char[] others = DkEmptyArray.CHAR;
+
+		if (whitespace) {
+			for (char ch = 0; ch < 128; ++ch) {
+				if (Character.isWhitespace(ch)) {
+					if (ch < 64) {
+						low |= 1L << ch;
+					}
+					else {
+						high |= 1L << (ch - 64);
+					}
+				}
+			}
+		}
+
+		if (chars != null) {
+			int otherCount = 0;
+			for (char ch : chars) {
+				if (ch < 64) {
+					low |= 1L << ch;
+				}
+				else if (ch < 128) {
+					high |= 1L << (ch - 64);
+				}
+				else {
+					++otherCount;
+				}
+			}
+			if (otherCount > 0) {
+				others = new char[otherCount];
+				otherCount = 0;
+				for (char ch : chars) {
+					if (ch >= 128) {
+						others[otherCount++] = ch;
+					}
+				}
+				Arrays.sort(others);
+			}
+		}
+
+		this.low = low;
+		this.high = high;
+		this.others = others;
+		this.whitespace = whitespace;
+	}
+
+	public boolean matches(char ch) {
+		if (ch < 64) {
+			return (low & (1L << ch)) != 0;
+		}
+		if (ch < 128) {
+			return (high & (1L << (ch - 64))) != 0;
+		}
+		return (others.length > 0 && Arrays.binarySearch(others, ch) >= 0) || (whitespace && Character.isWhitespace(ch));
+	}
+
+	/**
+	 * @return Index of first char in [start, end) which does not match, or `end` if all match.
+	 */
+	public int skipForward(@NonNull CharSequence s, int start, int end) {
+		while (start < end && matches(s.charAt(start))) {
+			++start;
+		}
+		return start;
+	}
+
+	/**
+	 * @return Index after last char in [start, end) which does not match, or `start` if all match.
+	 */
+	public int skipBackward(@NonNull CharSequence s, int start, int end) {
+		while (end > start && matches(s.charAt(end - 1))) {
+			--end;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Source of current time, so time-based features can take clock as dependency instead of
+ * calling `System` directly, for eg,. `DkDateTimes.setClock(new DkClock.Manual(0))` in unit test.
+ *
+ * - {@link #SYSTEM}: precise time from `System`.
+ * - {@link Coarse}: time which is updated by a background thread at each tick, reading it is only
+ * a volatile read, for hot paths (logging, metrics...) which tolerate low resolution.
+ * - {@link Manual}: time which only changes when caller advances it, for deterministic tests.
+ */
+public interface DkClock {
+	/**
+	 * Clock of `System.currentTimeMillis()` and `System.nanoTime()`.
+	 */
+	DkClock SYSTEM = new DkClock() {
+		@Override
+		public long nowMillis() {
+			return System.currentTimeMillis();
+		}
+
+		@Override
+		public long nowNanos() {
+			return System.nanoTime();
+		}
+	};
+
+	/**
+	 * @return Wall time in milliseconds since January 1, 1970, 00:00:00 GMT.
+	 */
+	long nowMillis();
+
+	/**
+	 * @return Monotonic time in nanoseconds, only difference of 2 values is meaningful.
+	 */
+	long nowNanos();
+
+	/**
+	 * Clock which is updated by a daemon thread every tick, so value lags behind real time at most a tick
+	 * (plus scheduling delay). Call `stop()` when no longer used, after that, it returns precise time.
+	 *
+	 * Cost: the thread wakes up at each tick even if nobody reads the clock, for eg,. 1 ms tick is 1000 wakeups
+	 * per second which keeps CPU from deep idle and drains battery, so prefer tick of 10 ms or more.
+	 */
+	class Coarse implements DkClock {
+		// Tick of shared clock, near frame interval (16 ms) which is enough for logging or metrics
+		private static final long SHARED_TICK_MILLIS = 10;
+
+		private static Coarse shared;
+
+		private final long tickNanos;
+		private volatile boolean running = true;
+		private volatile long millis;
+		private volatile long nanos;
+
+		/**
+		 * @return Clock with 10 ms tick which is shared in app, it is never stopped
+		 * (so its thread wakes up 100 times per second while app process is alive).
+		 */
+		@NonNull
+		public static synchronized Coarse shared() {
+			return shared != null ? shared : (shared = new Coarse(SHARED_TICK_MILLIS, TimeUnit.MILLISECONDS));
+		}
+
+		public Coarse(long tick, @NonNull TimeUnit unit) {
+			this.tickNanos = unit.toNanos(tick);
+			this.millis = System.currentTimeMillis();
+			this.nanos = System.nanoTime();
+
+			Thread ticker = new Thread(this::tick, "DkClock.Coarse");
+			ticker.setDaemon(true);
+			ticker.start();
+		}
+
+		@Override
+		public long nowMillis() {
+			return running ? millis : System.currentTimeMillis();
+		}
+
+		@Override
+		public long nowNanos() {
+			return running ? nanos : System.nanoTime();
+		}
+
+		/**
+		 * Stop background thread.
+		 */
+		public void stop() {
+			running = false;
+		}
+
+		private void tick() {
+			while (running) {
+				LockSupport.parkNanos(tickNanos);
+				millis = System.currentTimeMillis();
+				nanos = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Clock which only changes via `advance()` or `setMillis()`, it can be used from multiple threads.
+	 */
+	class Manual implements DkClock {
+		private final AtomicLong nanos = new AtomicLong();
+
+		// Wall time when monotonic time was 0
+		private volatile long baseMillis;
+
+		/**
+		 * @param startMillis Initial wall time, monotonic time starts from 0.
+		 */
+		public Manual(long startMillis) {
+			this.baseMillis = startMillis;
+		}
+
+		@Override
+		public long nowMillis() {
+			return baseMillis + nanos.get() / 1_000_000;
+		}
+
+		@Override
+		public long nowNanos() {
+			return nanos.get();
+		}
+
+		/**
+		 * Move both wall time and monotonic time forward.
+		 */
+		public void advance(long amount, @NonNull TimeUnit unit) {
+			if (amount < 0) {
+				throw new IllegalArgumentException("Cannot move clock backward: " + amount);
+			}
+			nanos.addAndGet(unit.toNanos(amount));
+		}
+
+		/**
+		 * Set wall time only (like user changes time of device), monotonic time is not changed.
+		 */
+		public void setMillis(long millis) {
+			baseMillis = millis - nanos.get() / 1_000_000;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges all calls within a window (counted from first call) into one execution.
+ * For eg,. collect ids of changed items, and reload them once per 200 ms.
+ *
+ * @param <V> Type of value which is passed at each call.
+ * @param <T> Type of merged value which is passed to action.
+ */
+public class DkCoalescer<V, T> extends TheBaseCallLimiter<T> {
+	// Merge (accumulated, value) -> new accumulated, accumulated is null at first call of a window
+	private final DkCaller2<T, V, T> merger;
+
+	public DkCoalescer(long window, TimeUnit unit, @NonNull DkCaller2<T, V, T> merger, @NonNull DkRunner1<T> action) {
+		this(window, unit, merger, action, DkExecutorService.getExecutor());
+	}
+
+	public DkCoalescer(long window, TimeUnit unit, @NonNull DkCaller2<T, V, T> merger, @NonNull DkRunner1<T> action, @NonNull ScheduledExecutorService scheduler) {
+		this(window, unit, merger, action, scheduler, DkClock.SYSTEM);
+	}
+
+	public DkCoalescer(long window, TimeUnit unit, @NonNull DkCaller2<T, V, T> merger, @NonNull DkRunner1<T> action,
+		@NonNull ScheduledExecutorService scheduler, @NonNull DkClock clock) {
+
+		super(window, unit, action, scheduler, clock);
+		this.merger = merger;
+	}
+
+	/**
+	 * Merge given `value` into pending argument.
+	 * Note: `merger` may be called more than one time for same value under contention,
+	 * so it should not modify the accumulated object in-place.
+	 */
+	@SuppressWarnings("unchecked")
+	public void call(V value) {
+		Object current, next;
+		do {
+			current = pending.get();
+			next = merger.call(current == NONE ? null : (T) current, value);
+		}
+		while (! pending.compareAndSet(current, next));
+
+		if (scheduled.compareAndSet(false, true)) {
+			schedule(windowNanos);
+		}
+	}
+
+	@Override
+	protected void onFire() {
+		scheduled.set(false);
+		runPending();
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public T peekPending() {
+		Object current = pending.get();
+		return current == NONE ? null : (T) current;
+	}
+}
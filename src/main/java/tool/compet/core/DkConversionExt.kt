@@ -21,38 +21,40 @@ fun String?.parseBooleanDk(): Boolean {
 	return "1" == this || "true".equals(this, ignoreCase = true)
 }
 
+// Below parsers do not throw (invalid input results default value), and do not allocate for common input.
+// See DkNumberParser for Java callers.
+
 fun String?.parseIntDk(): Int {
-	return try {
-		if (this == null) 0 else java.lang.Integer.parseInt(this)
-	}
-	catch (ignore: Exception) {
-		0
-	}
+	return DkNumberParser.parseInt(this, 0)
 }
 
 fun String?.parseLongDk(): Long {
-	return try {
-		if (this == null) 0L else java.lang.Long.parseLong(this)
-	}
-	catch (ignore: Exception) {
-		0L
-	}
+	return DkNumberParser.parseLong(this, 0L)
 }
 
 fun String?.parseFloatDk(): Float {
-	return try {
-		if (this == null) 0f else java.lang.Float.parseFloat(this)
-	}
-	catch (ignore: Exception) {
-		0f
-	}
+	return DkNumberParser.parseFloat(this, 0f)
 }
 
 fun String?.parseDoubleDk(): Double {
-	return try {
-		if (this == null) 0.0 else java.lang.Double.parseDouble(this)
-	}
-	catch (ignore: Exception) {
-		0.0
-	}
+	return DkNumberParser.parseDouble(this, 0.0)
+}
+
+/**
+ * Parse int in range [start, end) of this sequence, for eg,. a column of a CSV line.
+ */
+fun CharSequence?.parseIntDk(start: Int, end: Int, defaultValue: Int = 0): Int {
+	return DkNumberParser.parseInt(this, start, end, defaultValue)
+}
+
+fun CharSequence?.parseLongDk(start: Int, end: Int, defaultValue: Long = 0L): Long {
+	return DkNumberParser.parseLong(this, start, end, defaultValue)
+}
+
+fun CharSequence?.parseFloatDk(start: Int, end: Int, defaultValue: Float = 0f): Float {
+	return DkNumberParser.parseFloat(this, start, end, defaultValue)
+}
+
+fun CharSequence?.parseDoubleDk(start: Int, end: Int, defaultValue: Double = 0.0): Double {
+	return DkNumberParser.parseDouble(this, start, end, defaultValue)
 }
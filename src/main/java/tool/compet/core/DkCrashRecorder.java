@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps last N log records in memory, so they can be written to file when app crashes.
+ * Set it to logger via {@link DkLogger#setCrashRecorder(DkCrashRecorder)}, then call
+ * {@link #installDumpOnCrash(File)}.
+ *
+ * Slots are preallocated (fixed number of chars per slot, longer message is truncated),
+ * and writers claim a slot with one atomic increment, so recording does not lock or allocate.
+ * Each slot is published with its sequence number, and a record whose slot was re-claimed
+ * by newer record while dumping is skipped.
+ */
+public class DkCrashRecorder {
+	private final int mask;
+	private final int slotChars;
+
+	private final char[] chars;
+	private final int[] lengths;
+	private final byte[] types;
+	private final long[] times;
+
+	// Sequence of published record in each slot, -1 if none
+	private final AtomicLongArray slotSequences;
+	private final AtomicLong cursor = new AtomicLong();
+
+	public DkCrashRecorder() {
+		this(4096, 256);
+	}
+
+	/**
+	 * @param capacity Number of kept records, rounded up to power of 2.
+	 * @param slotChars Max chars of each record.
+	 */
+	public DkCrashRecorder(int capacity, int slotChars) {
+		capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+		this.mask = capacity - 1;
+		this.slotChars = slotChars;
+		this.chars = new char[capacity * slotChars];
+		this.lengths = new int[capacity];
+		this.types = new byte[capacity];
+		this.times = new long[capacity];
+		this.slotSequences = new AtomicLongArray(capacity);
+
+		for (int index = 0; index < capacity; ++index) {
+			slotSequences.set(index, -1);
+		}
+	}
+
+	/**
+	 * Record a log, the oldest record is overwritten when buffer is full.
+	 */
+	public void record(int logType, @Nullable String message) {
+		final long sequence = cursor.getAndIncrement();
+		final int slot = (int) sequence & mask;
+
+		if (message == null) {
+			message = "null";
+		}
+		final int length = Math.min(message.length(), slotChars);
+
+		message.getChars(0, length, chars, slot * slotChars);
+		lengths[slot] = length;
+		types[slot] = (byte) logType;
+		times[slot] = System.currentTimeMillis();
+		slotSequences.lazySet(slot, sequence);
+	}
+
+	/**
+	 * @return Kept records from oldest to newest, each line is: `yyyy-MM-dd HH:mm:ss.SSS logName message`.
+	 */
+	@NonNull
+	public String dump() {
+		final long end = cursor.get();
+		final long start = Math.max(0, end - (mask + 1));
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+		final Date date = new Date();
+		final StringBuilder sb = new StringBuilder((int) (end - start) * 64);
+
+		for (long sequence = start; sequence < end; ++sequence) {
+			final int slot = (int) sequence & mask;
+			if (slotSequences.get(slot) != sequence) {
+				continue;
+			}
+
+			final int mark = sb.length();
+			final int length = lengths[slot];
+			final int logType = types[slot];
+			date.setTime(times[slot]);
+
+			sb.append(dateFormat.format(date)).append(' ');
+			sb.append(logType >= DkLogger.LogType.TYPE_DEBUG && logType <= DkLogger.LogType.TYPE_EMERGENCY ? DkLogger.LogType.name(logType) : "?");
+			sb.append(' ').append(chars, slot * slotChars, length).append('\n');
+
+			// Slot was claimed by newer record while copying
+			if (cursor.get() - sequence > mask + 1) {
+				sb.setLength(mark);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Write kept records (and given error if provided) to file with one write.
+	 */
+	public void dumpTo(@NonNull File file, @Nullable Throwable error) throws IOException {
+		String content = dump();
+
+		if (error != null) {
+			StringWriter sw = new StringWriter(1024);
+			sw.write(content);
+			sw.write("----- crash -----\n");
+			error.printStackTrace(new PrintWriter(sw));
+			content = sw.toString();
+		}
+
+		DkFiles.createFile(file);
+		DkFiles.save(content, file, false);
+	}
+
+	/**
+	 * Install default uncaught exception handler which dumps records to given file,
+	 * then passes the exception to previous handler (system handler will kill the app).
+	 */
+	public synchronized void installDumpOnCrash(@NonNull File file) {
+		final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+
+		Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+			try {
+				record(DkLogger.LogType.TYPE_EMERGENCY, "Uncaught exception in thread " + thread.getName() + ": " + e);
+				dumpTo(file, e);
+			}
+			catch (Throwable dumpError) {
+				// Can not use DkLogs here since app is crashing
+				System.err.println("dklog_crash: Could not dump logs: " + dumpError);
+			}
+
+			if (previous != null) {
+				previous.uncaughtException(thread, e);
+			}
+		});
+	}
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader of delimited text (CSV, TSV...) in UTF-8, for eg,.
+ * <pre>{@code
+ * try (DkCsvReader reader = DkCsvReader.open(file, ',')) {
+ *     reader.nextRow(); // header
+ *     reader.readColumns(DkCsvReader.intColumn(0, ids, 0), DkCsvReader.doubleColumn(2, prices, 0));
+ * }
+ * }</pre>
+ *
+ * Bytes are read from channel in blocks, and decoded into a char buffer which is reused for all rows.
+ * A field is given as CharSequence slice of that buffer, or is parsed directly from it
+ * (via {@link DkNumberParser}), so no String is made for each field.
+ *
+ * Quoting follows RFC 4180: quoted field may contain delimiter, line break and doubled quote ("").
+ * Row ends with `\n`, `\r\n` or `\r`. Empty line is a row of one empty field.
+ */
+public class DkCsvReader implements Closeable {
+	private static final int BYTE_BUFFER_SIZE = 1 << 16;
+	private static final int CHAR_BUFFER_SIZE = 1 << 16;
+
+	// Decoder consumes at most 1 byte per free char, so a whole UTF-8 sequence (up to 4 bytes) needs 4 free chars
+	private static final int MIN_FREE_CHARS = 4;
+
+	/**
+	 * Receives a field of each row, see `intColumn()`, `doubleColumn()`...
+	 */
+	public interface Column {
+		/**
+		 * @return Index of field in row.
+		 */
+		int index();
+
+		/**
+		 * Called with chars in range [start, end) of given sequence, or with empty range if row does not have the field.
+		 */
+		void add(CharSequence chars, int start, int end);
+	}
+
+	private final ReadableByteChannel channel;
+	private final char delimiter;
+
+	// For reading a range of file
+	private long filePosition;
+	private final long fileEnd;
+
+	private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+	private boolean endOfInput;
+
+	// Decoded chars are in [0, limit), current row starts at `rowStart`
+	private char[] buf = new char[CHAR_BUFFER_SIZE];
+	private int limit;
+	private int rowStart;
+	private boolean skipLF;
+
+	// Fields of current row: start and end of i-th field are at [2i] and [2i + 1]
+	private int[] fieldBounds = new int[32];
+	private int fieldCount;
+
+	private final Chars chars = new Chars();
+	private final Chars field = new Chars();
+
+	public DkCsvReader(@NonNull ReadableByteChannel channel, char delimiter) {
+		this(channel, delimiter, -1, -1);
+	}
+
+	public DkCsvReader(@NonNull InputStream is, char delimiter) {
+		this(Channels.newChannel(is), delimiter, -1, -1);
+	}
+
+	// When `fileEnd` >= 0, read range [filePosition, fileEnd) of given file channel with positional read
+	private DkCsvReader(ReadableByteChannel channel, char delimiter, long filePosition, long fileEnd) {
+		this.channel = channel;
+		this.delimiter = delimiter;
+		this.filePosition = filePosition;
+		this.fileEnd = fileEnd;
+		this.chars.chars = this.field.chars = buf;
+		this.bytes.limit(0);
+	}
+
+	/**
+	 * Open reader of given file, caller must close it.
+	 */
+	@NonNull
+	public static DkCsvReader open(@NonNull File file, char delimiter) throws IOException {
+		return new DkCsvReader(new FileInputStream(file).getChannel(), delimiter);
+	}
+
+	/**
+	 * Read next row, after that, fields of the row can be accessed until next call.
+	 *
+	 * @return FALSE if no more row.
+	 */
+	public boolean nextRow() throws IOException {
+		int scan = rowStart;
+		boolean inQuotes = false;
+
+		// Find end of row, chars of row are kept in buffer (buffer grows for long row)
+		while (true) {
+			if (skipLF) {
+				if (scan == limit) {
+					if (! fill()) {
+						return false;
+					}
+					scan = rowStart;
+				}
+				skipLF = false;
+				if (buf[scan] == '\n') {
+					rowStart = ++scan;
+				}
+			}
+
+			final char[] buf = this.buf;
+			final int limit = this.limit;
+			for (; scan < limit; ++scan) {
+				final char ch = buf[scan];
+				if (ch == '"') {
+					inQuotes = ! inQuotes;
+				}
+				else if ((ch == '\n' || ch == '\r') && ! inQuotes) {
+					break;
+				}
+			}
+			if (scan < limit) {
+				skipLF = buf[scan] == '\r';
+				tokenize(rowStart, scan);
+				rowStart = scan + 1;
+				return true;
+			}
+
+			final int scanned = scan - rowStart;
+			if (! fill()) {
+				// Last row without line break
+				if (rowStart < this.limit) {
+					tokenize(rowStart, this.limit);
+					rowStart = this.limit;
+					return true;
+				}
+				return false;
+			}
+			scan = rowStart + scanned;
+		}
+	}
+
+	public int fieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * @return Slice of buffer which is valid until next row (same instance is returned for each call).
+	 */
+	@NonNull
+	public CharSequence field(int index) {
+		field.start = fieldBounds[index << 1];
+		field.end = fieldBounds[(index << 1) + 1];
+		return field;
+	}
+
+	/**
+	 * @param pool When provided, repeated values are deduplicated via it.
+	 */
+	@NonNull
+	public String fieldAsString(int index, @Nullable DkStringPool pool) {
+		final int start = fieldBounds[index << 1];
+		final int end = fieldBounds[(index << 1) + 1];
+		return pool != null ? pool.intern(buf, start, end) : new String(buf, start, end - start);
+	}
+
+	public int intField(int index, int defaultValue) {
+		return DkNumberParser.parseInt(chars, fieldBounds[index << 1], fieldBounds[(index << 1) + 1], defaultValue);
+	}
+
+	public long longField(int index, long defaultValue) {
+		return DkNumberParser.parseLong(chars, fieldBounds[index << 1], fieldBounds[(index << 1) + 1], defaultValue);
+	}
+
+	public double doubleField(int index, double defaultValue) {
+		return DkNumberParser.parseDouble(chars, fieldBounds[index << 1], fieldBounds[(index << 1) + 1], defaultValue);
+	}
+
+	/**
+	 * Read all remaining rows, and pass wanted fields of each row to given columns.
+	 *
+	 * @return Number of read rows.
+	 */
+	public int readColumns(@NonNull Column... columns) throws IOException {
+		int rowCount = 0;
+		while (nextRow()) {
+			++rowCount;
+			for (Column column : columns) {
+				final int index = column.index();
+				if (index < fieldCount) {
+					column.add(chars, fieldBounds[index << 1], fieldBounds[(index << 1) + 1]);
+				}
+				else {
+					column.add(chars, 0, 0);
+				}
+			}
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Column which parses int field into given list, invalid or missing field results `defaultValue`.
+	 */
+	@NonNull
+	public static Column intColumn(int index, @NonNull DkIntArrayList out, int defaultValue) {
+		return new Column() {
+			@Override
+			public int index() {
+				return index;
+			}
+
+			@Override
+			public void add(CharSequence chars, int start, int end) {
+				out.add(DkNumberParser.parseInt(chars, start, end, defaultValue));
+			}
+		};
+	}
+
+	@NonNull
+	public static Column longColumn(int index, @NonNull DkLongArrayList out, long defaultValue) {
+		return new Column() {
+			@Override
+			public int index() {
+				return index;
+			}
+
+			@Override
+			public void add(CharSequence chars, int start, int end) {
+				out.add(DkNumberParser.parseLong(chars, start, end, defaultValue));
+			}
+		};
+	}
+
+	@NonNull
+	public static Column doubleColumn(int index, @NonNull DkDoubleArrayList out, double defaultValue) {
+		return new Column() {
+			@Override
+			public int index() {
+				return index;
+			}
+
+			@Override
+			public void add(CharSequence chars, int start, int end) {
+				out.add(DkNumberParser.parseDouble(chars, start, end, defaultValue));
+			}
+		};
+	}
+
+	/**
+	 * @param pool When provided, repeated values are deduplicated via it.
+	 */
+	@NonNull
+	public static Column stringColumn(int index, @NonNull List<String> out, @Nullable DkStringPool pool) {
+		return new Column() {
+			@Override
+			public int index() {
+				return index;
+			}
+
+			@Override
+			public void add(CharSequence chars, int start, int end) {
+				out.add(pool != null ? pool.intern(chars, start, end) : chars.subSequence(start, end).toString());
+			}
+		};
+	}
+
+	/**
+	 * Read given file in parallel: the file is split into chunks at line breaks, each chunk is read by
+	 * a reader on shared pool of {@link DkExecutorService}. Note that, quoted field must not contain line break.
+	 *
+	 * @param skipHeader Skip first row of the file.
+	 * @param chunkReader Reads given reader (for eg,. with `readColumns()`) and returns result of the chunk.
+	 * @return Results of chunks in order of file.
+	 */
+	@NonNull
+	public static <R> List<R> parallelRead(@NonNull File file, char delimiter, boolean skipHeader,
+		@NonNull DkCallable1<DkCsvReader, R> chunkReader) throws IOException {
+
+		try (FileChannel channel = new FileInputStream(file).getChannel()) {
+			final long size = channel.size();
+			final int chunkCount = (int) Math.max(1, Math.min(
+				DkExecutorService.getExecutor().getCorePoolSize() + 1, size / BYTE_BUFFER_SIZE));
+
+			// Move each split point to after next line break
+			final List<long[]> ranges = new ArrayList<>(chunkCount);
+			long start = 0;
+			for (int index = 1; index <= chunkCount; ++index) {
+				long end = index == chunkCount ? size : Math.max(start, nextLineStart(channel, size * index / chunkCount, size));
+				if (end > start) {
+					ranges.add(new long[] {start, end});
+				}
+				start = end;
+			}
+
+			final List<DkCsvReader> readers = new ArrayList<>(ranges.size());
+			for (long[] range : ranges) {
+				DkCsvReader reader = new DkCsvReader(channel, delimiter, range[0], range[1]);
+				if (skipHeader && readers.isEmpty()) {
+					reader.nextRow();
+				}
+				readers.add(reader);
+			}
+
+			try {
+				return DkParallels.parallelMap(readers, reader -> {
+					try {
+						return chunkReader.call(reader);
+					}
+					catch (Exception e) {
+						throw DkParallels.asRuntimeException(e);
+					}
+				});
+			}
+			catch (RuntimeException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		// Channel of parallel read is owned by `parallelRead()`
+		if (fileEnd < 0) {
+			channel.close();
+		}
+	}
+
+	// region: Private
+
+	/**
+	 * Move unread chars to start of buffer, then decode more bytes into buffer.
+	 *
+	 * @return FALSE if no more input.
+	 */
+	private boolean fill() throws IOException {
+		if (rowStart > 0) {
+			System.arraycopy(buf, rowStart, buf, 0, limit - rowStart);
+			limit -= rowStart;
+			rowStart = 0;
+		}
+		// Keep room for at least one whole UTF-8 sequence, otherwise decoder cannot make progress
+		if (buf.length - limit < MIN_FREE_CHARS) {
+			buf = Arrays.copyOf(buf, buf.length << 1);
+			chars.chars = field.chars = buf;
+		}
+
+		while (true) {
+			if (! endOfInput && ! bytes.hasRemaining()) {
+				bytes.clear();
+				endOfInput = read(bytes) < 0;
+				bytes.flip();
+			}
+			final int count = DkUtf8.decode(bytes, CharBuffer.wrap(buf, limit, buf.length - limit), endOfInput);
+			limit += count;
+
+			if (count > 0) {
+				return true;
+			}
+			if (endOfInput) {
+				return false;
+			}
+			// Only incomplete sequence is left, move it to start and read more
+			bytes.compact();
+			endOfInput = read(bytes) < 0;
+			bytes.flip();
+		}
+	}
+
+	private int read(ByteBuffer out) throws IOException {
+		if (fileEnd < 0) {
+			return channel.read(out);
+		}
+
+		if (filePosition >= fileEnd) {
+			return -1;
+		}
+		final int oldLimit = out.limit();
+		out.limit((int) Math.min(oldLimit, out.position() + fileEnd - filePosition));
+		final int count = ((FileChannel) channel).read(out, filePosition);
+		out.limit(oldLimit);
+		if (count > 0) {
+			filePosition += count;
+		}
+		return count;
+	}
+
+	// Split chars in [start, end) into fields, quoted field is unescaped in place
+	private void tokenize(int start, int end) {
+		final char[] buf = this.buf;
+		final char delimiter = this.delimiter;
+		fieldCount = 0;
+
+		int pos = start;
+		while (true) {
+			if (pos < end && buf[pos] == '"') {
+				final int fieldStart = pos + 1;
+				int write = fieldStart;
+				int read = fieldStart;
+
+				while (read < end) {
+					final char ch = buf[read++];
+					if (ch == '"') {
+						if (read < end && buf[read] == '"') {
+							buf[write++] = '"';
+							++read;
+						}
+						else {
+							break;
+						}
+					}
+					else {
+						buf[write++] = ch;
+					}
+				}
+				// Chars after closing quote are kept as is
+				while (read < end && buf[read] != delimiter) {
+					buf[write++] = buf[read++];
+				}
+				addField(fieldStart, write);
+				pos = read;
+			}
+			else {
+				int read = pos;
+				while (read < end && buf[read] != delimiter) {
+					++read;
+				}
+				addField(pos, read);
+				pos = read;
+			}
+
+			if (pos >= end) {
+				return;
+			}
+			// Skip delimiter
+			++pos;
+		}
+	}
+
+	private void addField(int start, int end) {
+		final int index = fieldCount << 1;
+		if (index == fieldBounds.length) {
+			fieldBounds = Arrays.copyOf(fieldBounds, index << 1);
+		}
+		fieldBounds[index] = start;
+		fieldBounds[index + 1] = end;
+		++fieldCount;
+	}
+
+	// Position after first line break at or after given position, or `size` if not found
+	private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while (position < size) {
+			buffer.clear();
+			final int count = channel.read(buffer, position);
+			if (count <= 0) {
+				break;
+			}
+			final byte[] array = buffer.array();
+			for (int index = 0; index < count; ++index) {
+				if (array[index] == '\n') {
+					return position + index + 1;
+				}
+			}
+			position += count;
+		}
+		return size;
+	}
+
+	/**
+	 * View of range of char array.
+	 */
+	private static class Chars implements CharSequence {
+		char[] chars;
+		int start;
+		int end = -1; // -1: whole array
+
+		@Override
+		public int length() {
+			return (end < 0 ? chars.length : end) - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return chars[start + index];
+		}
+
+		@NonNull
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(chars, this.start + start, end - start);
+		}
+
+		@NonNull
+		@Override
+		public String toString() {
+			return new String(chars, start, length());
+		}
+	}
+
+	// endregion: Private
+}
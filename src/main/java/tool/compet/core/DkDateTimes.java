@@ -4,21 +4,59 @@
 
 package tool.compet.core;
 
-import java.text.DateFormat;
+import androidx.annotation.NonNull;
+
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * This class, provides common basic operations for datetime.
+ *
+ * Formatters are cached per thread by (pattern, locale), so `SimpleDateFormat` (which is not thread-safe)
+ * is not created for each call. Default pattern `yyyy-MM-dd HH:mm:ss` is formatted without formatter:
+ * text of current second is cached and shared by all threads, date part is only recomputed when day changed.
  */
 public class DkDateTimes {
+	private static final String DEFAULT_PATTERN = DkDateTimeConst.DATETIME;
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+
+	// Max number of cached formatters per thread
+	private static final int FORMATTER_CACHE_SIZE = 8;
+
+	private static final ThreadLocal<FormatterCache> formatterCache = new ThreadLocal<FormatterCache>() {
+		@Override
+		protected FormatterCache initialValue() {
+			return new FormatterCache();
+		}
+	};
+
+	// Text of last formatted second in default pattern
+	private static volatile SecondText lastSecond;
+
+	private static volatile DkClock clock = DkClock.SYSTEM;
+
+	/**
+	 * Set clock which provides current time for `nowXXX()` and `formatNow()`, for eg,.
+	 * `DkClock.Coarse.shared()` for hot paths, or `DkClock.Manual` in unit test.
+	 */
+	public static void setClock(@NonNull DkClock clock) {
+		DkDateTimes.clock = clock;
+	}
+
+	@NonNull
+	public static DkClock getClock() {
+		return clock;
+	}
+
 	/**
 	 * Returns the number of milliseconds (now) since January 1, 1970, 00:00:00 GMT.
 	 */
 	public static long nowInMillis() {
-		return new Date().getTime();
+		return clock.nowMillis();
 	}
 
 	/**
@@ -26,15 +64,26 @@ public class DkDateTimes {
 	 * For eg,. [2021, 03, 31, 14, 30, 59]
 	 */
 	public static int[] nowInArr() {
-		Calendar cal = Calendar.getInstance();
-		int year = cal.get(Calendar.YEAR);
-		int month = cal.get(Calendar.MONTH);
-		int day = cal.get(Calendar.DAY_OF_MONTH);
-		int hh = cal.get(Calendar.HOUR_OF_DAY);
-		int mm = cal.get(Calendar.MINUTE);
-		int ss = cal.get(Calendar.SECOND);
+		final long millis = nowInMillis();
+		final long local = millis + TimeZone.getDefault().getOffset(millis);
+		final long secondOfDay = floorMod(local, MILLIS_PER_DAY) / 1000;
+		final int ymd = civilFromDays(floorDiv(local, MILLIS_PER_DAY));
+
+		if ((ymd >> 9) < 1600) {
+			// Julian calendar is used before Gregorian cutover (1582)
+			Calendar cal = Calendar.getInstance();
+			cal.setTimeInMillis(millis);
+			return new int[] {
+				cal.get(Calendar.YEAR), cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH),
+				cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND)
+			};
+		}
 
-		return new int[] {year, month, day, hh, mm, ss};
+		// Month is 0-based as Calendar.MONTH
+		return new int[] {
+			ymd >> 9, ((ymd >> 5) & 15) - 1, ymd & 31,
+			(int) (secondOfDay / 3600), (int) (secondOfDay / 60 % 60), (int) (secondOfDay % 60)
+		};
 	}
 
 	/**
@@ -49,7 +98,18 @@ public class DkDateTimes {
 	}
 
 	public static String format(long millis) {
-		return format(millis, "yyyy-MM-dd HH:mm:ss", Locale.US);
+		final long second = floorDiv(millis, 1000);
+		SecondText last = lastSecond;
+		if (last != null && last.second == second) {
+			return last.text;
+		}
+
+		final SecondText next = formatDefault(millis, second, last);
+		if (next == null) {
+			return formatBy(millis, DEFAULT_PATTERN, Locale.US);
+		}
+		lastSecond = next;
+		return next.text;
 	}
 
 	public static String format(long millis, String pattern) {
@@ -62,8 +122,160 @@ public class DkDateTimes {
 	 * @return formatted datetime with format `Y-m-d H:i:s` in US locale.
 	 */
 	public static String format(long millis, String pattern, Locale locale) {
-		Date date = new Date(millis);
-		DateFormat formatter = new SimpleDateFormat(pattern, locale);
-		return formatter.format(date);
+		if (DEFAULT_PATTERN.equals(pattern) && Locale.US.equals(locale)) {
+			return format(millis);
+		}
+		return formatBy(millis, pattern, locale);
 	}
+
+	/**
+	 * Parse given text with given pattern (same as `SimpleDateFormat.parse()`).
+	 *
+	 * @return Time in millis, or `defaultValue` if the text could not be parsed.
+	 */
+	public static long parse(String text, String pattern, Locale locale, long defaultValue) {
+		if (text == null) {
+			return defaultValue;
+		}
+		final ParsePosition position = new ParsePosition(0);
+		final Date date = formatterCache.get().obtain(pattern, locale).parse(text, position);
+
+		return date == null ? defaultValue : date.getTime();
+	}
+
+	public static long parse(String text, String pattern, long defaultValue) {
+		return parse(text, pattern, Locale.US, defaultValue);
+	}
+
+	// region: Private
+
+	private static String formatBy(long millis, String pattern, Locale locale) {
+		final FormatterCache cache = formatterCache.get();
+		final SimpleDateFormat formatter = cache.obtain(pattern, locale);
+		cache.date.setTime(millis);
+
+		return formatter.format(cache.date);
+	}
+
+	/**
+	 * Make text of default pattern, date part of last text is reused when day is same.
+	 *
+	 * @return Null if year is out of range [1600, 9999], which is formatted by SimpleDateFormat.
+	 */
+	private static SecondText formatDefault(long millis, long second, SecondText last) {
+		// Take default time zone each time (at most once per second), so change of time zone is applied
+		final long local = millis + TimeZone.getDefault().getOffset(millis);
+		final long day = floorDiv(local, MILLIS_PER_DAY);
+		final char[] chars = new char[19];
+
+		if (last != null && last.day == day) {
+			last.text.getChars(0, 11, chars, 0);
+		}
+		else {
+			final int ymd = civilFromDays(day);
+			final int year = ymd >> 9;
+			if (year < 1600 || year > 9999) {
+				return null;
+			}
+			putPair(chars, 0, year / 100);
+			putPair(chars, 2, year % 100);
+			chars[4] = '-';
+			putPair(chars, 5, (ymd >> 5) & 15);
+			chars[7] = '-';
+			putPair(chars, 8, ymd & 31);
+			chars[10] = ' ';
+		}
+
+		final int secondOfDay = (int) (floorMod(local, MILLIS_PER_DAY) / 1000);
+		putPair(chars, 11, secondOfDay / 3600);
+		chars[13] = ':';
+		putPair(chars, 14, secondOfDay / 60 % 60);
+		chars[16] = ':';
+		putPair(chars, 17, secondOfDay % 60);
+
+		return new SecondText(second, day, new String(chars));
+	}
+
+	// Same as Math.floorDiv() and Math.floorMod() which require API 24
+	private static long floorDiv(long x, long y) {
+		final long q = x / y;
+		return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+	}
+
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+	private static void putPair(char[] chars, int offset, int value) {
+		chars[offset] = MyDigits.DIGIT_TENS[value];
+		chars[offset + 1] = MyDigits.DIGIT_ONES[value];
+	}
+
+	/**
+	 * Convert days since 1970-01-01 to proleptic Gregorian date (algorithm of Howard Hinnant).
+	 *
+	 * @return `(year << 9) | (month << 5) | day`, month is 1-based.
+	 */
+	private static int civilFromDays(long days) {
+		days += 719468;
+		final long era = floorDiv(days, 146097);
+		final int dayOfEra = (int) (days - era * 146097);
+		final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		// Clamp, caller falls back to Calendar for such year
+		return (int) (Math.max(0, Math.min(year, 99999)) << 9) | (month << 5) | day;
+	}
+
+	private static class SecondText {
+		final long second;
+		final long day;
+		final String text;
+
+		SecondText(long second, long day, String text) {
+			this.second = second;
+			this.day = day;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Formatters of a thread, oldest one is replaced when full.
+	 */
+	private static class FormatterCache {
+		final String[] patterns = new String[FORMATTER_CACHE_SIZE];
+		final Locale[] locales = new Locale[FORMATTER_CACHE_SIZE];
+		final SimpleDateFormat[] formatters = new SimpleDateFormat[FORMATTER_CACHE_SIZE];
+		final Date date = new Date();
+		int next;
+
+		SimpleDateFormat obtain(String pattern, Locale locale) {
+			// Time zone of formatter is fixed when created, so follow current default time zone
+			final TimeZone timeZone = TimeZone.getDefault();
+
+			for (int index = 0; index < FORMATTER_CACHE_SIZE; ++index) {
+				if (pattern.equals(patterns[index]) && locale.equals(locales[index])) {
+					final SimpleDateFormat formatter = formatters[index];
+					if (! timeZone.getID().equals(formatter.getTimeZone().getID())) {
+						formatter.setTimeZone(timeZone);
+					}
+					return formatter;
+				}
+			}
+
+			final SimpleDateFormat formatter = new SimpleDateFormat(pattern, locale);
+			patterns[next] = pattern;
+			locales[next] = locale;
+			formatters[next] = formatter;
+			next = (next + 1) % FORMATTER_CACHE_SIZE;
+
+			return formatter;
+		}
+	}
+
+	// endregion: Private
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses a burst of calls into one execution with the last argument,
+ * the action is run after no call happened within the window.
+ * For eg,. save draft after user stopped typing 500 ms.
+ */
+public class DkDebouncer<T> extends TheBaseCallLimiter<T> {
+	private volatile long lastCallNanos;
+
+	public DkDebouncer(long window, TimeUnit unit, @NonNull DkRunner1<T> action) {
+		this(window, unit, action, DkExecutorService.getExecutor());
+	}
+
+	public DkDebouncer(long window, TimeUnit unit, @NonNull DkRunner1<T> action, @NonNull ScheduledExecutorService scheduler) {
+		this(window, unit, action, scheduler, DkClock.SYSTEM);
+	}
+
+	public DkDebouncer(long window, TimeUnit unit, @NonNull DkRunner1<T> action,
+		@NonNull ScheduledExecutorService scheduler, @NonNull DkClock clock) {
+
+		super(window, unit, action, scheduler, clock);
+	}
+
+	/**
+	 * Replace pending argument with given `arg`, and restart the window.
+	 */
+	public void call(T arg) {
+		pending.set(arg);
+		lastCallNanos = clock.nowNanos();
+
+		if (scheduled.compareAndSet(false, true)) {
+			schedule(windowNanos);
+		}
+	}
+
+	@Override
+	protected void onFire() {
+		// Instead of re-scheduling at each call, just extend the window at fire time
+		long remainNanos = lastCallNanos + windowNanos - clock.nowNanos();
+		if (remainNanos > 0) {
+			schedule(remainNanos);
+			return;
+		}
+
+		scheduled.set(false);
+		runPending();
+	}
+}
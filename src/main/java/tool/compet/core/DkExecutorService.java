@@ -4,6 +4,7 @@
 
 package tool.compet.core;
 
+import java.util.concurrent.Delayed;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -13,13 +14,18 @@ import java.util.concurrent.TimeUnit;
  * This uses 2~4 threads, and by default, each thread has timeout 1 minute.
  */
 public class DkExecutorService {
-	private static DkExecutorService INS;
+	// Volatile for safe publication since install/shutdown can be called from any thread
+	private static volatile DkExecutorService INS;
 	private final ScheduledThreadPoolExecutor executor;
 
+	// Pool size at install time, used as lower bound when adjust pool size to load
+	private final int baseCorePoolSize;
+
 	public DkExecutorService(int corePoolSize, int maxPoolSize, long aliveTime, TimeUnit unit) {
 		ScheduledThreadPoolExecutor executor = this.executor = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(corePoolSize);
 		executor.setMaximumPoolSize(maxPoolSize);
 		executor.setKeepAliveTime(aliveTime, unit);
+		this.baseCorePoolSize = corePoolSize;
 	}
 
 	public static void install() {
@@ -38,14 +44,148 @@ public class DkExecutorService {
 
 	public static void install(int corePoolSize, int maxPoolSize, long aliveTime, TimeUnit unit) {
 		if (INS == null) {
-			INS = new DkExecutorService(corePoolSize, maxPoolSize, aliveTime, unit);
+			synchronized (DkExecutorService.class) {
+				if (INS == null) {
+					INS = new DkExecutorService(corePoolSize, maxPoolSize, aliveTime, unit);
+				}
+			}
 		}
 	}
 
+	/**
+	 * Install and start all core threads now, so first burst of tasks does not pay
+	 * thread-creation latency. Should be called at app startup (off the critical path if possible).
+	 */
+	public static void installAndPrestart(int corePoolSize, int maxPoolSize) {
+		install(corePoolSize, maxPoolSize);
+		prestart();
+	}
+
+	/**
+	 * Start all core threads which are not started yet.
+	 *
+	 * @return Number of threads which were started.
+	 */
+	public static int prestart() {
+		return getExecutor().prestartAllCoreThreads();
+	}
+
 	public static ScheduledThreadPoolExecutor getExecutor() {
-		if (INS == null) {
+		return instance().executor;
+	}
+
+	public static boolean isInstalled() {
+		return INS != null;
+	}
+
+	/**
+	 * Change pool size at runtime.
+	 * Note: `ScheduledThreadPoolExecutor` only grows to `corePoolSize`, so that is actual parallelism.
+	 */
+	public static void resize(int corePoolSize, int maxPoolSize) {
+		ScheduledThreadPoolExecutor executor = getExecutor();
+
+		// Order of setting matters since core size must not be greater than max size
+		if (maxPoolSize >= executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(maxPoolSize);
+			executor.setCorePoolSize(corePoolSize);
+		}
+		else {
+			executor.setCorePoolSize(corePoolSize);
+			executor.setMaximumPoolSize(maxPoolSize);
+		}
+	}
+
+	/**
+	 * Grow core pool size (up to max pool size) when due tasks in queue are more than threads,
+	 * and shrink back to install-time size when no task is due. Delayed and periodic tasks
+	 * which are waiting for their time are not counted as load.
+	 * Caller can call this periodically, for eg,. after submit a batch of tasks.
+	 *
+	 * @return Core pool size after adjusted.
+	 */
+	public static int adjustToLoad() {
+		DkExecutorService ins = instance();
+		ScheduledThreadPoolExecutor executor = ins.executor;
+		int coreSize = executor.getCorePoolSize();
+		int backlog = countDueTasks(executor, coreSize + 1);
+
+		if (backlog > coreSize && coreSize < executor.getMaximumPoolSize()) {
+			executor.setCorePoolSize(++coreSize);
+		}
+		else if (backlog == 0 && coreSize > ins.baseCorePoolSize) {
+			executor.setCorePoolSize(--coreSize);
+		}
+
+		return coreSize;
+	}
+
+	/**
+	 * Stop accepting new tasks, and wait for queued (include delayed) tasks and running tasks to finish.
+	 * If they are not finished before timeout, running tasks are interrupted and queued tasks are dropped.
+	 * After this, caller can `install()` again (for eg,. between tests).
+	 *
+	 * @return TRUE if all tasks were finished before timeout.
+	 */
+	public static boolean shutdown(long timeout, TimeUnit unit) {
+		DkExecutorService ins;
+		synchronized (DkExecutorService.class) {
+			ins = INS;
+			INS = null;
+		}
+		if (ins == null) {
+			return true;
+		}
+
+		ScheduledThreadPoolExecutor executor = ins.executor;
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(true);
+		executor.shutdown();
+
+		try {
+			if (executor.awaitTermination(timeout, unit)) {
+				return true;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		executor.shutdownNow();
+		return false;
+	}
+
+	/**
+	 * Interrupt running tasks, and drop all queued tasks immediately.
+	 */
+	public static void shutdownNow() {
+		DkExecutorService ins;
+		synchronized (DkExecutorService.class) {
+			ins = INS;
+			INS = null;
+		}
+		if (ins != null) {
+			ins.executor.shutdownNow();
+		}
+	}
+
+	// Count tasks in queue which can run now, stop counting at given limit
+	private static int countDueTasks(ScheduledThreadPoolExecutor executor, int limit) {
+		int count = 0;
+		for (Runnable task : executor.getQueue()) {
+			if (! (task instanceof Delayed) || ((Delayed) task).getDelay(TimeUnit.NANOSECONDS) <= 0) {
+				if (++count >= limit) {
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static DkExecutorService instance() {
+		DkExecutorService ins = INS;
+		if (ins == null) {
 			throw new RuntimeException("Must call `install()` first");
 		}
-		return INS.executor;
+		return ins;
 	}
 }
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Log printer which persists logs into size-rotated files with compact binary encoding.
+ * Files are: `name.0.dklog` (current), `name.1.dklog` (older)... and are converted back to text by {@link Decoder}.
+ *
+ * Records are encoded into an in-memory buffer and written to file channel in batches,
+ * so call `flush()` before reading files or at crash path. To not block caller thread at all,
+ * wrap this with {@link DkAsyncLogImpl}.
+ *
+ * File layout: header (magic, version, base time), then records:
+ * - Tag record: `TAG, varint tagId, varint length, utf8 bytes`.
+ * - Log record: `LOG, varint (time - previous time), byte logType, varint tagId (0: no tag), varint length, utf8 bytes`.
+ * - Event record (structured log from `DkLogger.at()`): same as log record, then fields as `DkLogEvent.writeBinary()`.
+ * Tag is the `where` part of message (text before the first `~ `), and is defined once per file.
+ */
+public class DkFileLogImpl implements DkLogger.EventLogImpl {
+	private static final int MAGIC = 0x444B4C47; // "DKLG"
+	private static final byte VERSION = 2;
+	private static final byte RECORD_TAG = 1;
+	private static final byte RECORD_LOG = 2;
+	private static final byte RECORD_EVENT = 3;
+	private static final int HEADER_SIZE = 4 + 1 + 8;
+	private static final int MAX_TAG_LENGTH = 64;
+	private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+	private final File dir;
+	private final String name;
+	private final long maxFileBytes;
+	private final int maxFileCount;
+
+	private final ByteBuffer buffer;
+	private final HashMap<String, Integer> tagIds = new HashMap<>();
+	private final DkByteArrayList fields = new DkByteArrayList();
+
+	private FileChannel channel;
+	private long fileBytes;
+	private long lastMillis;
+	private long lastFlushMillis;
+
+	/**
+	 * @param dir Directory which contains log files.
+	 * @param name Base name of log files.
+	 * @param maxFileBytes Rotate to new file when current file exceeds this size.
+	 * @param maxFileCount Max number of files to keep, oldest files are deleted.
+	 */
+	public DkFileLogImpl(@NonNull File dir, @NonNull String name, long maxFileBytes, int maxFileCount) {
+		this(dir, name, maxFileBytes, maxFileCount, 64 << 10);
+	}
+
+	public DkFileLogImpl(@NonNull File dir, @NonNull String name, long maxFileBytes, int maxFileCount, int bufferSize) {
+		this.dir = dir;
+		this.name = name;
+		this.maxFileBytes = maxFileBytes;
+		this.maxFileCount = Math.max(1, maxFileCount);
+		this.buffer = ByteBuffer.allocateDirect(Math.max(1024, bufferSize));
+	}
+
+	/**
+	 * @return Log file at given index, 0 is current file, larger index is older file.
+	 */
+	@NonNull
+	public File fileAt(int index) {
+		return new File(dir, name + '.' + index + ".dklog");
+	}
+
+	@Override
+	public synchronized void log(int logType, String message) {
+		final int tagEnd = findTagEnd(message);
+		write(RECORD_LOG, logType, tagEnd > 0 ? message.substring(0, tagEnd) : null, message, tagEnd > 0 ? tagEnd + 2 : 0);
+	}
+
+	/**
+	 * Fields are kept as binary (not rendered as text), and are rendered by {@link Decoder}.
+	 */
+	@Override
+	public synchronized void log(@NonNull DkLogEvent event, @Nullable String message, int suppressed) {
+		if (message == null) {
+			message = "";
+		}
+		if (suppressed > 0) {
+			message += " [suppressed " + suppressed + " similar logs]";
+		}
+
+		fields.clear();
+		event.writeBinary(fields);
+
+		// Too large fields do not fit buffer, write them as truncated text instead
+		if (fields.size() > buffer.capacity() >> 1) {
+			StringBuilder sb = new StringBuilder(message);
+			event.appendText(sb);
+			fields.clear();
+			message = sb.toString();
+		}
+
+		String tag = event.whereName();
+		if (tag != null && tag.length() > MAX_TAG_LENGTH) {
+			tag = tag.substring(0, MAX_TAG_LENGTH);
+		}
+		write(fields.size() > 0 ? RECORD_EVENT : RECORD_LOG, event.logType(), tag, message, 0);
+	}
+
+	/**
+	 * Write all buffered records to file.
+	 */
+	public synchronized void flush() {
+		try {
+			if (channel != null) {
+				writeBuffer();
+				channel.force(false);
+			}
+		}
+		catch (IOException e) {
+			System.err.println("dklog_file: Could not flush log: " + e);
+		}
+	}
+
+	/**
+	 * Flush and close current file. Next log will re-open it.
+	 */
+	public synchronized void close() {
+		flush();
+		closeChannel();
+	}
+
+	// region: Private
+
+	/**
+	 * Write a log (or event) record, fields of event record are taken from `fields`.
+	 */
+	private void write(byte record, int logType, @Nullable String tag, String message, int msgStart) {
+		try {
+			if (channel == null) {
+				openCurrentFile();
+			}
+
+			final long now = System.currentTimeMillis();
+			final int tagLength = tag == null ? 0 : tag.length();
+			final int fieldBytes = record == RECORD_EVENT ? fields.size() : 0;
+
+			// Too long message is truncated to fit buffer
+			final int msgEnd = Math.min(message.length(), msgStart + (buffer.capacity() - 256 - fieldBytes) / 3);
+
+			// Reserve for worst case of both records, so they are always in same file
+			reserve(2 * 16 + 3 * (tagLength + msgEnd - msgStart) + fieldBytes);
+
+			int tagId = 0;
+			if (tag != null) {
+				Integer id = tagIds.get(tag);
+				if (id == null) {
+					tagIds.put(tag, id = tagIds.size() + 1);
+
+					final byte[] bytes = encodeUtf8(tag, 0, tagLength);
+					buffer.put(RECORD_TAG);
+					putVarint(id);
+					putVarint(bytes.length);
+					buffer.put(bytes);
+				}
+				tagId = id;
+			}
+
+			final byte[] bytes = encodeUtf8(message, msgStart, msgEnd);
+			buffer.put(record);
+			putVarint(Math.max(0, now - lastMillis));
+			buffer.put((byte) logType);
+			putVarint(tagId);
+			putVarint(bytes.length);
+			buffer.put(bytes);
+			if (fieldBytes > 0) {
+				buffer.put(fields.getCurrentArray(), 0, fieldBytes);
+			}
+			// Keep max time, so after wall clock stepped backward, records have delta 0 until clock catches up
+			// (instead of offsetting all later records forward by the step)
+			lastMillis = Math.max(lastMillis, now);
+
+			if (now - lastFlushMillis >= FLUSH_INTERVAL_MILLIS) {
+				writeBuffer();
+			}
+		}
+		catch (IOException e) {
+			// Can not use DkLogs here since this can be printer of it
+			System.err.println("dklog_file: Could not write log: " + e);
+		}
+	}
+
+	// Reserve space for next records, rotate file if it is going to be full
+	private void reserve(int bytes) throws IOException {
+		final long pendingBytes = fileBytes + buffer.position();
+		if (pendingBytes + bytes > maxFileBytes && pendingBytes > HEADER_SIZE) {
+			writeBuffer();
+			rotate();
+		}
+		if (buffer.remaining() < bytes) {
+			writeBuffer();
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			fileBytes += channel.write(buffer);
+		}
+		buffer.clear();
+		lastFlushMillis = System.currentTimeMillis();
+	}
+
+	private void openCurrentFile() throws IOException {
+		File file = fileAt(0);
+		DkFiles.createFile(file);
+
+		// Always start new file, so base time and tag table in header are valid for whole file
+		if (file.length() > 0) {
+			rotateFiles();
+			DkFiles.createFile(file);
+		}
+
+		channel = new FileOutputStream(file, false).getChannel();
+		fileBytes = 0;
+		tagIds.clear();
+
+		lastMillis = System.currentTimeMillis();
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.putLong(lastMillis);
+	}
+
+	private void rotate() throws IOException {
+		closeChannel();
+		rotateFiles();
+		openCurrentFile();
+	}
+
+	// Shift name.i -> name.(i+1), and delete the oldest one
+	private void rotateFiles() {
+		DkFiles.delete(fileAt(maxFileCount - 1));
+
+		for (int index = maxFileCount - 2; index >= 0; --index) {
+			File file = fileAt(index);
+			if (file.exists() && ! file.renameTo(fileAt(index + 1))) {
+				System.err.println("dklog_file: Could not rotate file: " + file);
+			}
+		}
+	}
+
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException ignore) {
+			}
+			channel = null;
+		}
+	}
+
+	private void putVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	// Encode chars in [start, end). JDK encoder is used since it is intrinsic (much faster than
+	// encode into reused array by DkUtf8 for ASCII text), and it also encodes lone surrogate as '?'
+	private static byte[] encodeUtf8(String s, int start, int end) {
+		final String text = (start == 0 && end == s.length()) ? s : s.substring(start, end);
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	// Index of "~ " which ends tag (where) part that DkLogger puts before message
+	private static int findTagEnd(String message) {
+		for (int index = 0, N = Math.min(message.length() - 1, MAX_TAG_LENGTH); index < N; ++index) {
+			if (message.charAt(index) == '~' && message.charAt(index + 1) == ' ') {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	// endregion: Private
+
+	/**
+	 * Converts binary log files back to text, each record is a line as:
+	 * `yyyy-MM-dd HH:mm:ss.SSS logName tag~ message`.
+	 */
+	public static class Decoder {
+		/**
+		 * Decode given binary log file, and write text to given writer.
+		 *
+		 * @return Number of decoded log records.
+		 * @throws IOException When file is not a log file or is broken.
+		 */
+		public static int decode(@NonNull File file, @NonNull Writer out) throws IOException {
+			ByteBuffer in;
+			try (FileInputStream is = new FileInputStream(file)) {
+				FileChannel channel = is.getChannel();
+				in = ByteBuffer.allocate((int) channel.size());
+				while (in.hasRemaining() && channel.read(in) >= 0) {
+				}
+				in.flip();
+			}
+
+			// Older version only lacks event record
+			if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.get() > VERSION) {
+				throw new IOException("Not a log file: " + file);
+			}
+
+			SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+			Date date = new Date();
+			HashMap<Integer, String> tags = new HashMap<>();
+			StringBuilder fieldText = new StringBuilder();
+			long millis = in.getLong();
+			int count = 0;
+
+			try {
+				while (in.hasRemaining()) {
+					byte kind = in.get();
+
+					if (kind == RECORD_TAG) {
+						int tagId = (int) getVarint(in);
+						tags.put(tagId, getUtf8(in, (int) getVarint(in)));
+					}
+					else if (kind == RECORD_LOG || kind == RECORD_EVENT) {
+						millis += getVarint(in);
+						int logType = in.get();
+						String tag = tags.get((int) getVarint(in));
+						String message = getUtf8(in, (int) getVarint(in));
+
+						fieldText.setLength(0);
+						if (kind == RECORD_EVENT) {
+							DkLogEvent.appendBinaryAsText(in, fieldText);
+						}
+
+						date.setTime(millis);
+						out.write(dateFormat.format(date));
+						out.write(' ');
+						out.write(DkLogger.LogType.name(logType));
+						out.write(' ');
+						if (tag != null) {
+							out.write(tag);
+							out.write("~ ");
+						}
+						out.write(message);
+						out.append(fieldText);
+						out.write('\n');
+						++count;
+					}
+					else {
+						break;
+					}
+				}
+			}
+			catch (BufferUnderflowException | IndexOutOfBoundsException ignore) {
+				// Partially written tail when app was killed
+			}
+
+			out.flush();
+			return count;
+		}
+
+		private static long getVarint(ByteBuffer in) {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = in.get();
+				result |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					break;
+				}
+			}
+			return result;
+		}
+
+		private static String getUtf8(ByteBuffer in, int length) {
+			String s = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+			in.position(in.position() + length);
+			return s;
+		}
+	}
+}
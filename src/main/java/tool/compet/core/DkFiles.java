@@ -4,21 +4,24 @@
 
 package tool.compet.core;
 
+import androidx.annotation.Nullable;
+
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -110,11 +113,11 @@ public class DkFiles {
 	}
 
 	public static void save(String utf8Chars, File file, boolean append) throws IOException {
-		save(utf8Chars == null ? "".getBytes() : utf8Chars.getBytes(), file.getAbsolutePath(), append);
+		save(utf8Chars == null ? DkEmptyArray.BYTE : utf8Chars.getBytes(StandardCharsets.UTF_8), file.getAbsolutePath(), append);
 	}
 
 	public static void save(String utf8Chars, String filePath, boolean append) throws IOException {
-		save(utf8Chars == null ? "".getBytes() : utf8Chars.getBytes(), filePath, append);
+		save(utf8Chars == null ? DkEmptyArray.BYTE : utf8Chars.getBytes(StandardCharsets.UTF_8), filePath, append);
 	}
 
 	public static void save(byte[] data, File file, boolean append) throws IOException {
@@ -133,21 +136,56 @@ public class DkFiles {
 	}
 
 	/**
-	 * Load (read) data from given file.
+	 * Load (read) data as UTF-8 from given file, each line ends with `DkConst.LS`.
 	 */
 	public static String loadAsString(String filePath) throws IOException {
 		createFile(filePath);
 
-		String line;
-		StringBuilder sb = new StringBuilder(256);
-		BufferedReader br = new BufferedReader(new FileReader(filePath));
+		try (InputStream is = new FileInputStream(filePath)) {
+			return loadAsString(is);
+		}
+	}
 
-		while ((line = br.readLine()) != null) {
-			sb.append(line).append(DkConst.LS);
+	/**
+	 * Read all data as UTF-8 from given stream (the stream is not closed), each line ends with `DkConst.LS`
+	 * (same as joining lines of `BufferedReader.readLine()`).
+	 */
+	public static String loadAsString(InputStream is) throws IOException {
+		DkByteArrayList bytes = readAll(is);
+		int byteCount = bytes.size();
+		if (byteCount == 0) {
+			return "";
 		}
 
-		br.close();
+		// Fast path: lines already end with line separator, so decode all at once.
+		// Note that, byte '\r' never occurs inside multi-byte sequence
+		if ("\n".equals(DkConst.LS) && bytes.indexOf((byte) '\r') < 0) {
+			if (bytes.get(byteCount - 1) != '\n') {
+				bytes.add((byte) '\n');
+				++byteCount;
+			}
+			return new String(bytes.getCurrentArray(), 0, byteCount, StandardCharsets.UTF_8);
+		}
 
+		// Replace each line terminator (\n, \r, \r\n) with line separator
+		final char[] chars = new char[byteCount];
+		final int charCount = DkUtf8.decode(bytes.getCurrentArray(), 0, byteCount, chars, 0);
+		final StringBuilder sb = new StringBuilder(charCount + 16);
+		int lineStart = 0;
+
+		for (int index = 0; index < charCount; ++index) {
+			final char ch = chars[index];
+			if (ch == '\n' || ch == '\r') {
+				sb.append(chars, lineStart, index - lineStart).append(DkConst.LS);
+				if (ch == '\r' && index + 1 < charCount && chars[index + 1] == '\n') {
+					++index;
+				}
+				lineStart = index + 1;
+			}
+		}
+		if (lineStart < charCount) {
+			sb.append(chars, lineStart, charCount - lineStart).append(DkConst.LS);
+		}
 		return sb.toString();
 	}
 
@@ -155,17 +193,99 @@ public class DkFiles {
 	 * Load (read) data as UTF-8 from given file.
 	 */
 	public static List<String> loadAsUtf8Lines(File file) throws Exception {
+		return loadAsUtf8Lines(file, null);
+	}
+
+	/**
+	 * Load (read) data as UTF-8 lines from given file.
+	 *
+	 * @param pool When provided, repeated lines are deduplicated via it, for eg,. `DkStringPool.shared()`.
+	 */
+	public static List<String> loadAsUtf8Lines(File file, @Nullable DkStringPool pool) throws Exception {
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			return readLines(reader, pool, false);
+		}
+	}
+
+	/**
+	 * Read all lines (same as `BufferedReader.readLine()`) from given reader, the reader is not closed.
+	 * When `pool` is provided, each line is interned from read buffer directly, so String is only made
+	 * for new line.
+	 *
+	 * @param trim Remove leading and trailing chars which are <= ' ' (same as `String.trim()`).
+	 */
+	public static List<String> readLines(Reader reader, @Nullable DkStringPool pool, boolean trim) throws IOException {
 		List<String> lines = new ArrayList<>();
-		BufferedReader reader = newUtf8Reader(file);
-		String readLine;
+		char[] buf = new char[8192];
+		int length = 0; // number of chars in buffer
+		int pos = 0; // scan position
+		int lineStart = 0;
+		boolean skipLF = false;
+
+		while (true) {
+			for (; pos < length; ++pos) {
+				char ch = buf[pos];
+				if (ch == '\n' || ch == '\r') {
+					if (ch == '\n' && skipLF) {
+						lineStart = pos + 1;
+					}
+					else {
+						lines.add(makeLine(buf, lineStart, pos, pool, trim));
+						lineStart = pos + 1;
+					}
+				}
+				skipLF = ch == '\r';
+			}
+
+			// Keep unfinished line at start of buffer
+			if (lineStart > 0) {
+				System.arraycopy(buf, lineStart, buf, 0, length - lineStart);
+				length -= lineStart;
+				pos -= lineStart;
+				lineStart = 0;
+			}
+			else if (length == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length << 1);
+			}
+
+			int readCount = reader.read(buf, length, buf.length - length);
+			if (readCount < 0) {
+				if (length > 0) {
+					lines.add(makeLine(buf, 0, length, pool, trim));
+				}
+				return lines;
+			}
+			length += readCount;
+		}
+	}
 
-		while ((readLine = reader.readLine()) != null) {
-			lines.add(readLine);
+	private static DkByteArrayList readAll(InputStream is) throws IOException {
+		DkByteArrayList result = new DkByteArrayList(Math.max(8192, is.available() + 1));
+		int readCount;
+
+		do {
+			result.ensureCapacity(result.size() + 8192);
+			byte[] buffer = result.getCurrentArray();
+			readCount = is.read(buffer, result.size, buffer.length - result.size);
+			if (readCount > 0) {
+				result.size += readCount;
+			}
 		}
+		while (readCount >= 0);
 
-		reader.close();
+		return result;
+	}
 
-		return lines;
+	private static String makeLine(char[] buf, int start, int end, DkStringPool pool, boolean trim) {
+		if (trim) {
+			while (start < end && buf[start] <= ' ') {
+				++start;
+			}
+			while (end > start && buf[end - 1] <= ' ') {
+				--end;
+			}
+		}
+		return pool != null ? pool.intern(buf, start, end) : new String(buf, start, end - start);
 	}
 
 	/**
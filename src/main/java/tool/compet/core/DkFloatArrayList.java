@@ -4,6 +4,8 @@
 
 package tool.compet.core;
 
+import androidx.annotation.NonNull;
+
 /**
  * This is performance-better version of {@link java.util.ArrayList} for primitive type.
  *
@@ -245,6 +247,27 @@ public class DkFloatArrayList extends TheBaseArrayList {
 		return result;
 	}
 
+	/**
+	 * Compose elements as `[e1, e2, ...]`.
+	 */
+	@NonNull
+	@Override
+	public String toString() {
+		final int size = this.size;
+		final StringBuilder buffer = new StringBuilder(2 + size * 12);
+
+		buffer.append('[');
+		for (int index = 0; index < size; ++index) {
+			if (index > 0) {
+				buffer.append(", ");
+			}
+			DkNumberFormatter.append(buffer, this.arr[index]);
+		}
+		buffer.append(']');
+
+		return buffer.toString();
+	}
+
 	// Make internal array bigger enough to make its capacity greater than given `minCapacity`.
 	private void growCapacity(int minCapacity) {
 		int newCapacity = MyArrayHelper.calcNextCapacity(this.arr.length, minCapacity, Integer.MAX_VALUE - 8);
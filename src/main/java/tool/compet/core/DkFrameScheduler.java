@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cooperative scheduler which runs deferrable work on the main thread without jank.
+ * Queued tasks are run at each frame until the per-frame time budget is exhausted,
+ * remaining tasks are run at next frames. At least one task is run per frame,
+ * so caller should split big work into small tasks.
+ *
+ * Tasks can be posted from any thread, they are always run on the thread of frame source
+ * (main thread by default). For unit test, pass a manual frame source and `DkClock.Manual`.
+ */
+public class DkFrameScheduler {
+	/**
+	 * Source of frame ticks, for eg,. `Choreographer`.
+	 */
+	public interface FrameSource {
+		/**
+		 * Call given `frame` once at next frame.
+		 */
+		void postFrame(@NonNull Runnable frame);
+	}
+
+	private static DkFrameScheduler mainScheduler;
+
+	private final ConcurrentLinkedQueue<DkRunnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean frameRequested = new AtomicBoolean();
+	private final Runnable frameTask = this::onFrame;
+	private final FrameSource frameSource;
+	private final DkClock clock;
+	private volatile long budgetNanos;
+
+	/**
+	 * @return Scheduler on main thread, driven by `Choreographer` with 4 ms budget per frame.
+	 */
+	@NonNull
+	public static synchronized DkFrameScheduler main() {
+		if (mainScheduler == null) {
+			mainScheduler = new DkFrameScheduler(new ChoreographerFrameSource(), DkClock.SYSTEM, TimeUnit.MILLISECONDS.toNanos(4));
+		}
+		return mainScheduler;
+	}
+
+	public DkFrameScheduler(@NonNull FrameSource frameSource, @NonNull DkClock clock, long budgetNanos) {
+		this.frameSource = frameSource;
+		this.clock = clock;
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * Queue given task to run at some next frame.
+	 */
+	public void post(@NonNull DkRunnable task) {
+		queue.offer(task);
+		requestFrame();
+	}
+
+	public void setBudget(long budget, TimeUnit unit) {
+		this.budgetNanos = unit.toNanos(budget);
+	}
+
+	/**
+	 * @return Number of tasks which are waiting to run.
+	 */
+	public int pendingCount() {
+		return queue.size();
+	}
+
+	private void requestFrame() {
+		if (frameRequested.compareAndSet(false, true)) {
+			frameSource.postFrame(frameTask);
+		}
+	}
+
+	private void onFrame() {
+		frameRequested.set(false);
+
+		final long deadline = clock.nowNanos() + budgetNanos;
+		DkRunnable task;
+
+		do {
+			if ((task = queue.poll()) == null) {
+				return;
+			}
+			try {
+				task.run();
+			}
+			catch (Exception e) {
+				DkLogcats.error(this, e, "Frame task was failed");
+			}
+		}
+		while (clock.nowNanos() < deadline);
+
+		// Budget is exhausted, yield to rendering and continue at next frame
+		if (! queue.isEmpty()) {
+			requestFrame();
+		}
+	}
+
+	/**
+	 * Posts frame callback to `Choreographer` of main thread.
+	 */
+	private static class ChoreographerFrameSource implements FrameSource {
+		private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+		@Override
+		public void postFrame(@NonNull Runnable frame) {
+			// Choreographer is per-looper, so must obtain it on main thread
+			if (DkUtils.INSTANCE.isMainThread()) {
+				Choreographer.getInstance().postFrameCallback(frameTimeNanos -> frame.run());
+			}
+			else {
+				mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> frame.run()));
+			}
+		}
+	}
+}
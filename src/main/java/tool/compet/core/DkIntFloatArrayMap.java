@@ -160,7 +160,8 @@ public class DkIntFloatArrayMap extends TheBaseSparseArray {
 			if (index > 0) {
 				buffer.append(", ");
 			}
-			buffer.append(keyAt(index)).append('=').append(valueAt(index));
+			buffer.append(keyAt(index)).append('=');
+			DkNumberFormatter.append(buffer, valueAt(index));
 		}
 		buffer.append('}');
 
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds all occurrences of many keywords in one pass (Aho-Corasick automaton).
+ * Compile keywords once, then scan any number of texts, scanning time depends on text length
+ * (and number of matches), not on number of keywords.
+ *
+ * Automaton is stored in flat int arrays: edges of each state are sorted by symbol and searched
+ * with binary search, ASCII edges of root state are looked up directly.
+ * Text can be CharSequence (offsets in chars) or UTF-8 bytes (offsets in bytes), for eg,.
+ * a memory-mapped file via `FileChannel.map()`.
+ *
+ * This is immutable after compiled, so it can be used from multiple threads.
+ */
+public class DkKeywordMatcher {
+	/**
+	 * Receives each match.
+	 */
+	public interface Callback {
+		/**
+		 * @param keywordIndex Index of matched keyword in compiled keywords
+		 *     (for duplicated keywords, index of the first one).
+		 * @param start Start offset (inclusive) of the match in text.
+		 * @param end End offset (exclusive) of the match in text.
+		 * @return FALSE to stop scanning.
+		 */
+		boolean onMatch(int keywordIndex, int start, int end);
+	}
+
+	private final String[] keywords;
+	private final Automaton charAutomaton;
+
+	// Built at first byte scan
+	private volatile Automaton byteAutomaton;
+
+	/**
+	 * @param keywords Empty keyword is ignored.
+	 */
+	public DkKeywordMatcher(@NonNull String... keywords) {
+		this.keywords = keywords.clone();
+
+		int[][] symbols = new int[keywords.length][];
+		for (int index = keywords.length - 1; index >= 0; --index) {
+			String keyword = keywords[index];
+			int[] chars = new int[keyword.length()];
+			for (int charIndex = chars.length - 1; charIndex >= 0; --charIndex) {
+				chars[charIndex] = keyword.charAt(charIndex);
+			}
+			symbols[index] = chars;
+		}
+		this.charAutomaton = new Automaton(symbols);
+	}
+
+	public int keywordCount() {
+		return keywords.length;
+	}
+
+	@NonNull
+	public String keywordAt(int index) {
+		return keywords[index];
+	}
+
+	/**
+	 * Report all matches (include overlapped ones) in given text.
+	 *
+	 * @return FALSE if callback stopped scanning.
+	 */
+	public boolean scan(@NonNull CharSequence text, @NonNull Callback callback) {
+		return scan(text, 0, text.length(), callback);
+	}
+
+	public boolean scan(@NonNull CharSequence text, int start, int end, @NonNull Callback callback) {
+		final Automaton automaton = charAutomaton;
+		int state = 0;
+
+		for (int index = start; index < end; ++index) {
+			state = automaton.next(state, text.charAt(index));
+
+			if (automaton.hasOutput(state) && ! automaton.report(state, index + 1, callback)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return TRUE if some keyword occurs in given text.
+	 */
+	public boolean containsAny(@NonNull CharSequence text) {
+		final Automaton automaton = charAutomaton;
+		int state = 0;
+
+		for (int index = 0, N = text.length(); index < N; ++index) {
+			state = automaton.next(state, text.charAt(index));
+
+			if (automaton.hasOutput(state)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Report all matches in UTF-8 bytes in range [start, end), offsets are in bytes.
+	 */
+	public boolean scan(@NonNull byte[] utf8, int start, int end, @NonNull Callback callback) {
+		final Automaton automaton = byteAutomaton();
+		int state = 0;
+
+		for (int index = start; index < end; ++index) {
+			state = automaton.next(state, utf8[index] & 0xFF);
+
+			if (automaton.hasOutput(state) && ! automaton.report(state, index + 1, callback)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Report all matches in UTF-8 bytes from position to limit of given buffer (position is not changed),
+	 * offsets are absolute indices in the buffer.
+	 */
+	public boolean scan(@NonNull ByteBuffer utf8, @NonNull Callback callback) {
+		if (utf8.hasArray()) {
+			int offset = utf8.arrayOffset();
+			return scan(utf8.array(), offset + utf8.position(), offset + utf8.limit(), (keywordIndex, start, end) -> {
+				return callback.onMatch(keywordIndex, start - offset, end - offset);
+			});
+		}
+
+		final Automaton automaton = byteAutomaton();
+		int state = 0;
+
+		for (int index = utf8.position(), end = utf8.limit(); index < end; ++index) {
+			state = automaton.next(state, utf8.get(index) & 0xFF);
+
+			if (automaton.hasOutput(state) && ! automaton.report(state, index + 1, callback)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Automaton byteAutomaton() {
+		Automaton automaton = byteAutomaton;
+		if (automaton == null) {
+			synchronized (this) {
+				if ((automaton = byteAutomaton) == null) {
+					int[][] symbols = new int[keywords.length][];
+					for (int index = keywords.length - 1; index >= 0; --index) {
+						byte[] bytes = keywords[index].getBytes(StandardCharsets.UTF_8);
+						int[] keywordSymbols = new int[bytes.length];
+						for (int byteIndex = bytes.length - 1; byteIndex >= 0; --byteIndex) {
+							keywordSymbols[byteIndex] = bytes[byteIndex] & 0xFF;
+						}
+						symbols[index] = keywordSymbols;
+					}
+					byteAutomaton = automaton = new Automaton(symbols);
+				}
+			}
+		}
+		return automaton;
+	}
+
+	/**
+	 * Aho-Corasick automaton over int symbols, state 0 is root.
+	 */
+	private static class Automaton {
+		private static final int ROOT_DIRECT_SIZE = 128;
+
+		// Edges of state s are in [edgeStarts[s], edgeStarts[s + 1]), sorted by symbol
+		private final int[] edgeStarts;
+		private final int[] edgeSymbols;
+		private final int[] edgeTargets;
+
+		// Direct transitions of root for small symbols
+		private final int[] rootNext = new int[ROOT_DIRECT_SIZE];
+
+		private final int[] fails;
+
+		// Keyword which ends at the state, or -1
+		private final int[] keywordAt;
+
+		// Nearest state in fail chain which ends a keyword, or 0
+		private final int[] outputLinks;
+
+		// Length (in symbols) of each keyword
+		private final int[] keywordLengths;
+
+		Automaton(int[][] keywords) {
+			// Build trie with linked edge lists
+			DkIntArrayList firstEdges = new DkIntArrayList();
+			DkIntArrayList keywordAtList = new DkIntArrayList();
+			DkIntArrayList nextEdges = new DkIntArrayList();
+			DkIntArrayList symbols = new DkIntArrayList();
+			DkIntArrayList targets = new DkIntArrayList();
+			firstEdges.add(-1);
+			keywordAtList.add(-1);
+
+			this.keywordLengths = new int[keywords.length];
+
+			for (int keywordIndex = 0; keywordIndex < keywords.length; ++keywordIndex) {
+				int[] keyword = keywords[keywordIndex];
+				keywordLengths[keywordIndex] = keyword.length;
+				if (keyword.length == 0) {
+					continue;
+				}
+
+				int state = 0;
+				for (int symbol : keyword) {
+					int child = -1;
+					for (int edge = firstEdges.get(state); edge >= 0; edge = nextEdges.get(edge)) {
+						if (symbols.get(edge) == symbol) {
+							child = targets.get(edge);
+							break;
+						}
+					}
+					if (child < 0) {
+						child = firstEdges.size();
+						firstEdges.add(-1);
+						keywordAtList.add(-1);
+
+						nextEdges.add(firstEdges.get(state));
+						symbols.add(symbol);
+						targets.add(child);
+						firstEdges.set(state, symbols.size() - 1);
+					}
+					state = child;
+				}
+				if (keywordAtList.get(state) < 0) {
+					keywordAtList.set(state, keywordIndex);
+				}
+			}
+
+			// Convert to sorted flat arrays
+			final int stateCount = firstEdges.size();
+			final int edgeCount = symbols.size();
+			this.edgeStarts = new int[stateCount + 1];
+			this.edgeSymbols = new int[edgeCount];
+			this.edgeTargets = new int[edgeCount];
+			this.keywordAt = keywordAtList.toArray();
+
+			int pos = 0;
+			for (int state = 0; state < stateCount; ++state) {
+				edgeStarts[state] = pos;
+				int start = pos;
+				for (int edge = firstEdges.get(state); edge >= 0; edge = nextEdges.get(edge)) {
+					// Insertion sort, edges of a state are few except root
+					int symbol = symbols.get(edge);
+					int target = targets.get(edge);
+					int index = pos++;
+					while (index > start && edgeSymbols[index - 1] > symbol) {
+						edgeSymbols[index] = edgeSymbols[index - 1];
+						edgeTargets[index] = edgeTargets[index - 1];
+						--index;
+					}
+					edgeSymbols[index] = symbol;
+					edgeTargets[index] = target;
+				}
+			}
+			edgeStarts[stateCount] = pos;
+
+			for (int edge = edgeStarts[0]; edge < edgeStarts[1]; ++edge) {
+				if (edgeSymbols[edge] < ROOT_DIRECT_SIZE) {
+					rootNext[edgeSymbols[edge]] = edgeTargets[edge];
+				}
+			}
+
+			// Compute fail and output links in BFS order
+			this.fails = new int[stateCount];
+			this.outputLinks = new int[stateCount];
+			DkIntArrayList queue = new DkIntArrayList(stateCount);
+			queue.add(0);
+
+			for (int head = 0; head < queue.size(); ++head) {
+				final int state = queue.get(head);
+
+				for (int edge = edgeStarts[state], end = edgeStarts[state + 1]; edge < end; ++edge) {
+					final int child = edgeTargets[edge];
+					final int fail = state == 0 ? 0 : next(fails[state], edgeSymbols[edge]);
+
+					fails[child] = fail;
+					outputLinks[child] = keywordAt[fail] >= 0 ? fail : outputLinks[fail];
+					queue.add(child);
+				}
+			}
+		}
+
+		int next(int state, int symbol) {
+			while (true) {
+				if (state == 0) {
+					return symbol < ROOT_DIRECT_SIZE ? rootNext[symbol] : findEdge(0, symbol, 0);
+				}
+				int target = findEdge(state, symbol, -1);
+				if (target >= 0) {
+					return target;
+				}
+				state = fails[state];
+			}
+		}
+
+		boolean hasOutput(int state) {
+			return keywordAt[state] >= 0 || outputLinks[state] != 0;
+		}
+
+		boolean report(int state, int end, Callback callback) {
+			for (int out = keywordAt[state] >= 0 ? state : outputLinks[state]; out != 0; out = outputLinks[out]) {
+				int keywordIndex = keywordAt[out];
+				if (! callback.onMatch(keywordIndex, end - keywordLengths[keywordIndex], end)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int findEdge(int state, int symbol, int notFound) {
+			int low = edgeStarts[state];
+			int high = edgeStarts[state + 1] - 1;
+
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int midSymbol = edgeSymbols[mid];
+				if (midSymbol < symbol) {
+					low = mid + 1;
+				}
+				else if (midSymbol > symbol) {
+					high = mid - 1;
+				}
+				else {
+					return edgeTargets[mid];
+				}
+			}
+			return notFound;
+		}
+	}
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Structured log event which is built by {@link DkLogger#at(int)}, for eg,.
+ * `logger.at(TYPE_INFO).kv("userId", 123).kv("ms", 4.2).log("done")`.
+ *
+ * Events are pooled per thread, and primitive fields are stored in a `long[]` without boxing.
+ * When the log type is disabled, `at()` returns a shared no-op event, so building costs no allocation.
+ * An event must not be kept or used after `log()` was called.
+ */
+public class DkLogEvent {
+	private static final byte KIND_LONG = 1;
+	private static final byte KIND_DOUBLE = 2;
+	private static final byte KIND_BOOLEAN = 3;
+	private static final byte KIND_OBJECT = 4;
+
+	// Shared event for disabled log types, it ignores everything
+	static final DkLogEvent NOOP = new DkLogEvent();
+
+	private static final ThreadLocal<DkLogEvent> threadEvent = new ThreadLocal<DkLogEvent>() {
+		@Override
+		protected DkLogEvent initialValue() {
+			return new DkLogEvent();
+		}
+	};
+
+	private DkLogger logger;
+	private int logType;
+	private Object where;
+
+	private String[] keys = new String[8];
+	private byte[] kinds = new byte[8];
+	private long[] bits = new long[8];
+	private Object[] objects = new Object[8];
+	private int size;
+
+	// TRUE while the event is being built by some caller
+	private boolean inUse;
+
+	// TRUE while the event is being printed by `log()`
+	private boolean logging;
+
+	private DkLogEvent() {
+	}
+
+	/**
+	 * Obtain pooled event of current thread.
+	 *
+	 * When the pooled one is in use, a new event is made for this call:
+	 * - While it is being printed, a field value's `toString()` can log again.
+	 * - While it is being built, its chain was abandoned without `log()` (or this is called in an argument
+	 * of the chain). Pooled event is taken back in this case, so an abandoned chain does not disable pooling forever.
+	 */
+	static DkLogEvent obtain(DkLogger logger, int logType) {
+		DkLogEvent event = threadEvent.get();
+		if (event.inUse) {
+			if (! event.logging) {
+				event.inUse = false;
+			}
+			event = new DkLogEvent();
+		}
+		else {
+			// Drop fields of abandoned chain
+			event.release();
+		}
+		event.logger = logger;
+		event.logType = logType;
+		event.inUse = true;
+		return event;
+	}
+
+	/**
+	 * Set location (class, instance or tag) of this log.
+	 */
+	public DkLogEvent where(@Nullable Object where) {
+		if (this != NOOP) {
+			this.where = where;
+		}
+		return this;
+	}
+
+	public DkLogEvent kv(@NonNull String key, int value) {
+		return put(key, KIND_LONG, value, null);
+	}
+
+	public DkLogEvent kv(@NonNull String key, long value) {
+		return put(key, KIND_LONG, value, null);
+	}
+
+	public DkLogEvent kv(@NonNull String key, double value) {
+		return put(key, KIND_DOUBLE, Double.doubleToRawLongBits(value), null);
+	}
+
+	public DkLogEvent kv(@NonNull String key, boolean value) {
+		return put(key, KIND_BOOLEAN, value ? 1 : 0, null);
+	}
+
+	/**
+	 * Boxed number and boolean are stored as primitive fields, so they are rendered
+	 * as JSON number/boolean and encoded as binary number.
+	 */
+	public DkLogEvent kv(@NonNull String key, @Nullable Object value) {
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return put(key, KIND_LONG, ((Number) value).longValue(), null);
+		}
+		if (value instanceof Double || value instanceof Float) {
+			return put(key, KIND_DOUBLE, Double.doubleToRawLongBits(((Number) value).doubleValue()), null);
+		}
+		if (value instanceof Boolean) {
+			return put(key, KIND_BOOLEAN, (Boolean) value ? 1 : 0, null);
+		}
+		return put(key, KIND_OBJECT, 0, value);
+	}
+
+	/**
+	 * Print this event with given message, and release it to the pool.
+	 */
+	public void log(@Nullable String message) {
+		if (this != NOOP) {
+			try {
+				logging = true;
+				logger.logEvent(this, message);
+			}
+			finally {
+				release();
+			}
+		}
+	}
+
+	public int logType() {
+		return logType;
+	}
+
+	@Nullable
+	public Object where() {
+		return where;
+	}
+
+	/**
+	 * @return Name of `where` (class simple name, or tag itself), null if no `where`.
+	 */
+	@Nullable
+	public String whereName() {
+		final Object where = this.where;
+		if (where == null || where instanceof String) {
+			return (String) where;
+		}
+		return where instanceof Class ? ((Class<?>) where).getSimpleName() : where.getClass().getSimpleName();
+	}
+
+	public int fieldCount() {
+		return size;
+	}
+
+	@NonNull
+	public String keyAt(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Render fields as text: ` key1=value1 key2=value2`.
+	 */
+	public void appendText(@NonNull StringBuilder sb) {
+		for (int index = 0; index < size; ++index) {
+			sb.append(' ').append(keys[index]).append('=');
+			appendValue(sb, index, false);
+		}
+	}
+
+	/**
+	 * Render this event as a JSON object: `{"type":"info","where":"...","msg":"...","key1":value1,...}`.
+	 */
+	public void appendJson(@NonNull StringBuilder sb, @Nullable String message) {
+		sb.append("{\"type\":\"").append(DkLogger.LogType.name(logType)).append('"');
+		if (where != null) {
+			sb.append(",\"where\":");
+			appendJsonString(sb, whereName());
+		}
+		if (message != null) {
+			sb.append(",\"msg\":");
+			appendJsonString(sb, message);
+		}
+		for (int index = 0; index < size; ++index) {
+			sb.append(',');
+			appendJsonString(sb, keys[index]);
+			sb.append(':');
+			appendValue(sb, index, true);
+		}
+		sb.append('}');
+	}
+
+	/**
+	 * Encode fields into compact binary: `varint count`, then for each field:
+	 * `utf8 key, byte kind, value` where value is varint (zigzag) for integer and boolean,
+	 * 8 bytes for double, utf8 of `toString()` for object. Utf8 string is `varint length, bytes`.
+	 */
+	public void writeBinary(@NonNull DkByteArrayList out) {
+		writeVarint(out, size);
+		for (int index = 0; index < size; ++index) {
+			writeUtf8(out, keys[index]);
+			final byte kind = kinds[index];
+			out.add(kind);
+
+			if (kind == KIND_DOUBLE) {
+				long value = bits[index];
+				for (int shift = 56; shift >= 0; shift -= 8) {
+					out.add((byte) (value >>> shift));
+				}
+			}
+			else if (kind == KIND_OBJECT) {
+				writeUtf8(out, String.valueOf(objects[index]));
+			}
+			else {
+				long value = bits[index];
+				writeVarint(out, (value << 1) ^ (value >> 63));
+			}
+		}
+	}
+
+	/**
+	 * Read fields which were encoded by `writeBinary()`, and render them as text same as `appendText()`.
+	 */
+	static void appendBinaryAsText(@NonNull ByteBuffer in, @NonNull StringBuilder sb) {
+		for (long count = readVarint(in); count > 0; --count) {
+			sb.append(' ').append(readUtf8(in)).append('=');
+			final byte kind = in.get();
+
+			if (kind == KIND_DOUBLE) {
+				sb.append(Double.longBitsToDouble(in.getLong()));
+			}
+			else if (kind == KIND_OBJECT) {
+				sb.append(readUtf8(in));
+			}
+			else {
+				final long zigzag = readVarint(in);
+				final long value = (zigzag >>> 1) ^ -(zigzag & 1);
+				if (kind == KIND_BOOLEAN) {
+					sb.append(value != 0);
+				}
+				else {
+					sb.append(value);
+				}
+			}
+		}
+	}
+
+	// region: Private
+
+	private DkLogEvent put(String key, byte kind, long value, Object object) {
+		if (this == NOOP) {
+			return this;
+		}
+		final int index = size;
+		if (index == keys.length) {
+			int capacity = index << 1;
+			keys = Arrays.copyOf(keys, capacity);
+			kinds = Arrays.copyOf(kinds, capacity);
+			bits = Arrays.copyOf(bits, capacity);
+			objects = Arrays.copyOf(objects, capacity);
+		}
+		keys[index] = key;
+		kinds[index] = kind;
+		bits[index] = value;
+		objects[index] = object;
+		size = index + 1;
+
+		return this;
+	}
+
+	private void release() {
+		Arrays.fill(objects, 0, size, null);
+		size = 0;
+		where = null;
+		logger = null;
+		inUse = false;
+		logging = false;
+	}
+
+	private void appendValue(StringBuilder sb, int index, boolean json) {
+		switch (kinds[index]) {
+			case KIND_LONG: {
+				sb.append(bits[index]);
+				break;
+			}
+			case KIND_DOUBLE: {
+				double value = Double.longBitsToDouble(bits[index]);
+				// JSON does not support NaN and Infinity
+				if (json && (Double.isNaN(value) || Double.isInfinite(value))) {
+					sb.append("null");
+				}
+				else {
+					sb.append(value);
+				}
+				break;
+			}
+			case KIND_BOOLEAN: {
+				sb.append(bits[index] != 0);
+				break;
+			}
+			default: {
+				Object value = objects[index];
+				if (! json) {
+					sb.append(value);
+				}
+				else if (value == null) {
+					sb.append("null");
+				}
+				else {
+					appendJsonString(sb, value.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Append given text as quoted JSON string, also used by {@link DkTraces}.
+	 */
+	static void appendJsonString(StringBuilder sb, String s) {
+		sb.append('"');
+		for (int index = 0, N = s.length(); index < N; ++index) {
+			char ch = s.charAt(index);
+			if (ch == '"' || ch == '\\') {
+				sb.append('\\').append(ch);
+			}
+			else if (ch == '\n') {
+				sb.append("\\n");
+			}
+			else if (ch < 0x20) {
+				sb.append("\\u00").append(Character.forDigit(ch >> 4, 16)).append(Character.forDigit(ch & 0xF, 16));
+			}
+			else {
+				sb.append(ch);
+			}
+		}
+		sb.append('"');
+	}
+
+	private static void writeVarint(DkByteArrayList out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.add((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.add((byte) value);
+	}
+
+	private static void writeUtf8(DkByteArrayList out, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length);
+		out.addAll(bytes);
+	}
+
+	private static long readVarint(ByteBuffer in) {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	private static String readUtf8(ByteBuffer in) {
+		final int length = (int) readVarint(in);
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// endregion: Private
+}
@@ -8,8 +8,8 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Console log in Logcat. It provides log-callback, benchmark...
@@ -20,13 +20,59 @@ public class DkLogcats implements DkLogger.LogType {
 	// Enable this to log back trace of current thread
 	public static boolean logBackTrace;
 
-	// For benchmark
-	private static ArrayDeque<Object[]> benchmarkTaskQueue;
+	// Max number of frames in back trace
+	public static int backTraceDepth = 10;
+
+	// Only capture back trace for 1-in-N logs, for eg,. set 100 to use back trace at production
+	public static int backTraceSampling = 1;
+	private static final AtomicInteger backTraceCounter = new AtomicInteger();
+
+	// Actual printer, it is replaced with async printer when async log is enabled
+	private static volatile DkLogger.LogImpl printer = DkLogcats::printActual;
 
 	public static DkLogger logger() {
 		return logger != null ? logger : (logger = new DkLogger(DkLogcats::logActual));
 	}
 
+	/**
+	 * Print logs on background thread, so log call does not block caller thread.
+	 * Note: call `flush()` at crash path to not lose pending logs.
+	 *
+	 * @param capacity Max number of pending logs.
+	 * @param overflowPolicy One of `DkAsyncLogImpl.OVERFLOW_*`.
+	 */
+	public static synchronized void enableAsync(int capacity, int overflowPolicy) {
+		if (! (printer instanceof DkAsyncLogImpl)) {
+			printer = new DkAsyncLogImpl(DkLogcats::printActual, capacity, overflowPolicy);
+		}
+	}
+
+	/**
+	 * Print logs on caller thread again. Pending logs are printed (wait at most 1 second),
+	 * and background thread of async printer is stopped.
+	 */
+	public static synchronized void disableAsync() {
+		DkLogger.LogImpl printer = DkLogcats.printer;
+		if (printer instanceof DkAsyncLogImpl) {
+			DkLogcats.printer = DkLogcats::printActual;
+			((DkAsyncLogImpl) printer).close(1, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Print suppressed counts of rate limiter, and wait (at most 1 second) until all pending logs
+	 * are printed when async log is enabled.
+	 */
+	public static void flush() {
+		if (logger != null) {
+			logger.flushSuppressed();
+		}
+		DkLogger.LogImpl printer = DkLogcats.printer;
+		if (printer instanceof DkAsyncLogImpl) {
+			((DkAsyncLogImpl) printer).flush(1, TimeUnit.SECONDS);
+		}
+	}
+
 	/**
 	 * Debug log. Only run at debug env, so should wrap it with DEBUG.
 	 * Notice: should remove all debug code when release.
@@ -35,6 +81,29 @@ public class DkLogcats implements DkLogger.LogType {
 		logger().debug(where, format, args);
 	}
 
+	public static void debug(@Nullable Object where, @Nullable String format, int arg) {
+		logger().debug(where, format, arg);
+	}
+
+	public static void debug(@Nullable Object where, @Nullable String format, long arg) {
+		logger().debug(where, format, arg);
+	}
+
+	public static void debug(@Nullable Object where, @Nullable String format, double arg) {
+		logger().debug(where, format, arg);
+	}
+
+	public static void debug(@Nullable Object where, @Nullable String format, Object arg) {
+		logger().debug(where, format, arg);
+	}
+
+	/**
+	 * Log debug with lazy message, `message` is called only when debug log is enabled.
+	 */
+	public static void debug(@Nullable Object where, DkCaller<String> message) {
+		logger().debug(where, message);
+	}
+
 	/**
 	 * Log info. Only run at debug env, so should wrap it with DEBUG.
 	 */
@@ -42,6 +111,29 @@ public class DkLogcats implements DkLogger.LogType {
 		logger().info(where, format, args);
 	}
 
+	public static void info(@Nullable Object where, @Nullable String format, int arg) {
+		logger().info(where, format, arg);
+	}
+
+	public static void info(@Nullable Object where, @Nullable String format, long arg) {
+		logger().info(where, format, arg);
+	}
+
+	public static void info(@Nullable Object where, @Nullable String format, double arg) {
+		logger().info(where, format, arg);
+	}
+
+	public static void info(@Nullable Object where, @Nullable String format, Object arg) {
+		logger().info(where, format, arg);
+	}
+
+	/**
+	 * Log info with lazy message, `message` is called only when info log is enabled.
+	 */
+	public static void info(@Nullable Object where, DkCaller<String> message) {
+		logger().info(where, message);
+	}
+
 	/**
 	 * Log notice. Only run at debug env, so should wrap it with DEBUG.
 	 */
@@ -93,14 +185,12 @@ public class DkLogcats implements DkLogger.LogType {
 
 	/**
 	 * Start benchmark. Only run at debug env, so should wrap it with DEBUG.
+	 * Benchmarks are nestable and per-thread, and are also collected by {@link DkTraces} when it is enabled.
 	 */
 	public static void tick(@Nullable Object where, String task) {
 		if (BuildConfig.DEBUG) {
-			if (benchmarkTaskQueue == null) {
-				benchmarkTaskQueue = new ArrayDeque<>();
-			}
-			benchmarkTaskQueue.push(new Object[] {task, System.currentTimeMillis()});
-			logger().debug(where, "Start task [%s]", task);;
+			DkTraces.stack().push(task);
+			logger().debug(where, "Start task [%s]", task);
 		}
 	}
 
@@ -109,26 +199,26 @@ public class DkLogcats implements DkLogger.LogType {
 	 */
 	public static void tock(@Nullable Object where) {
 		if (BuildConfig.DEBUG) {
-			Object[] taskInfo = benchmarkTaskQueue.pop();
-			if (taskInfo != null) {
-				logger().debug(where, "End task [%s] in %d ms", (String) taskInfo[0], System.currentTimeMillis() - (long) taskInfo[1]);
+			DkTraces.SpanStack stack = DkTraces.stack();
+			long elapsedNanos = stack.pop();
+			if (elapsedNanos >= 0) {
+				logger().debug(where, "End task [%s] in %.3f ms", stack.lastName, elapsedNanos / 1e6);
 			}
 		}
 	}
 
 	private static void logActual(int logType, String message) {
-		String logTag = "dklog_" + DkLogger.LogType.name(logType);
-
-		if (logBackTrace) {
-			ArrayList<String> descriptions = new ArrayList<>();
-			for (StackTraceElement elm : Thread.currentThread().getStackTrace()) {
-				String description = tool.compet.core.DkStrings.format("%s (%d) ==> %s.%s()", elm.getFileName(), elm.getLineNumber(), elm.getClassName(), elm.getMethodName());
-				descriptions.add(description);
-			}
-			String trace = DkStrings.join('\n', descriptions);
-			message += "\nStack Trace:\n" + trace;
+		if (logBackTrace && (backTraceSampling <= 1 || backTraceCounter.getAndIncrement() % backTraceSampling == 0)) {
+			message += MyLogging.beautifyBacktrace(backTraceDepth);
 		}
 
+		// Back trace must be captured at caller thread, so only printing is delegated
+		printer.log(logType, message);
+	}
+
+	private static void printActual(int logType, String message) {
+		String logTag = "dklog_" + DkLogger.LogType.name(logType);
+
 		switch (logType) {
 			case TYPE_DEBUG: {
 				Log.d(logTag, message);
@@ -4,8 +4,13 @@
 
 package tool.compet.core;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 public class DkLogger {
 	public interface LogType {
 		int TYPE_DEBUG = 1;
@@ -46,9 +51,36 @@ public class DkLogger {
 		void log(int logType, String message);
 	}
 
+	/**
+	 * Log printer which can receive structured event (for eg,. to write JSON or binary fields).
+	 * Events from {@link #at(int)} are passed to it directly instead of being rendered as text.
+	 */
+	public interface EventLogImpl extends LogImpl {
+		/**
+		 * Called on logging thread, the event is reused after this returns,
+		 * so render it here instead of keeping it.
+		 */
+		void log(@NonNull DkLogEvent event, @Nullable String message, int suppressed);
+	}
+
 	// Log adapter for actual log
 	private LogImpl logImpl;
 
+	// Logs which have type lower than this are dropped before any formatting
+	private volatile int minLogType = LogType.TYPE_DEBUG;
+
+	// Rate limiter and sampler, null when both of them are disabled
+	private volatile MyLogLimiter limiter;
+
+	// Periodic report of suppressed logs, null when disabled
+	private ScheduledFuture<?> suppressedReport;
+
+	// Max number of frames of each throwable in logged error
+	private volatile int errorTraceDepth = MyLogging.DEFAULT_ERROR_DEPTH;
+
+	// Keeps last printed logs for dumping at crash, null when disabled
+	private volatile DkCrashRecorder crashRecorder;
+
 	public DkLogger(LogImpl logImpl) {
 		this.logImpl = logImpl;
 	}
@@ -57,6 +89,116 @@ public class DkLogger {
 		this.logImpl = logImpl;
 	}
 
+	/**
+	 * Set min log type, for eg,. set `TYPE_INFO` at release env to drop all debug logs.
+	 */
+	public void setMinLogType(int minLogType) {
+		this.minLogType = minLogType;
+	}
+
+	public int getMinLogType() {
+		return minLogType;
+	}
+
+	/**
+	 * Limit each call site (same `where` class and same format string) to given rate,
+	 * excess logs are dropped and counted, the count is reported at next passed log of that call site
+	 * or by `flushSuppressed()` (see also `setSuppressedReportPeriod()`).
+	 * This protects from a hot loop which floods the log.
+	 *
+	 * @param permitsPerSecond Max logs per second of a call site, 0 to disable limiting.
+	 * @param burst Max logs which can pass at once after an idle period.
+	 */
+	public void setRateLimit(int permitsPerSecond, int burst) {
+		MyLogLimiter current = limiter;
+		updateLimiter(permitsPerSecond, burst, current == null ? 1 : current.sampleRate);
+	}
+
+	/**
+	 * Print suppressed counts which were not reported yet, for eg,. a burst followed by silence
+	 * is otherwise never reported since no next log of that call site passes.
+	 */
+	public void flushSuppressed() {
+		MyLogLimiter limiter = this.limiter;
+		if (limiter != null) {
+			limiter.drainSuppressed(this::printSuppressed);
+		}
+	}
+
+	/**
+	 * Call `flushSuppressed()` every given period on `DkExecutorService`.
+	 *
+	 * @param period 0 to disable.
+	 */
+	public void setSuppressedReportPeriod(long period, TimeUnit unit) {
+		setSuppressedReportPeriod(period, unit, DkExecutorService.getExecutor());
+	}
+
+	/**
+	 * Call `flushSuppressed()` every given period on given scheduler.
+	 *
+	 * @param period 0 to disable.
+	 */
+	public synchronized void setSuppressedReportPeriod(long period, TimeUnit unit, @NonNull ScheduledExecutorService scheduler) {
+		if (suppressedReport != null) {
+			suppressedReport.cancel(false);
+			suppressedReport = null;
+		}
+		if (period > 0) {
+			suppressedReport = scheduler.scheduleWithFixedDelay(this::flushSuppressed, period, period, unit);
+		}
+	}
+
+	/**
+	 * Randomly keep only given ratio of debug logs (debug, info, notice).
+	 *
+	 * @param sampleRate In range [0, 1], 1 to keep all.
+	 */
+	public void setSampleRate(double sampleRate) {
+		MyLogLimiter current = limiter;
+		updateLimiter(current == null ? 0 : current.permitsPerSecond, current == null ? 0 : current.burst, sampleRate);
+	}
+
+	/**
+	 * Set max number of frames of each throwable (error and its causes) in error log,
+	 * rest frames are printed as `... N more`.
+	 */
+	public void setErrorTraceDepth(int errorTraceDepth) {
+		this.errorTraceDepth = errorTraceDepth;
+	}
+
+	/**
+	 * Also keep printed logs in given recorder, so they can be dumped when app crashes.
+	 *
+	 * @param crashRecorder Null to disable.
+	 */
+	public void setCrashRecorder(@Nullable DkCrashRecorder crashRecorder) {
+		this.crashRecorder = crashRecorder;
+	}
+
+	@Nullable
+	public DkCrashRecorder getCrashRecorder() {
+		return crashRecorder;
+	}
+
+	/**
+	 * Caller can use this to guard expensive computation of log arguments.
+	 *
+	 * @return TRUE if log of given type will be printed.
+	 */
+	public boolean isEnabled(int logType) {
+		return logType >= minLogType;
+	}
+
+	/**
+	 * Start a structured log, for eg,. `logger.at(TYPE_INFO).kv("userId", 123).kv("ms", 4.2).log("done")`.
+	 * When given log type is disabled, a shared no-op event is returned, so nothing is allocated.
+	 */
+	@NonNull
+	public DkLogEvent at(int logType) {
+		return logType >= minLogType ? DkLogEvent.obtain(this, logType) : DkLogEvent.NOOP;
+	}
+
 	/**
 	 * Log debug.
 	 */
@@ -64,6 +206,45 @@ public class DkLogger {
 		log(LogType.TYPE_DEBUG, where, format, args);
 	}
 
+	// Below overloads avoid varargs-array allocation and boxing when log type is disabled
+
+	public void debug(@Nullable Object where, @Nullable String format, int arg) {
+		if (isEnabled(LogType.TYPE_DEBUG)) {
+			log(LogType.TYPE_DEBUG, where, format, arg);
+		}
+	}
+
+	public void debug(@Nullable Object where, @Nullable String format, long arg) {
+		if (isEnabled(LogType.TYPE_DEBUG)) {
+			log(LogType.TYPE_DEBUG, where, format, arg);
+		}
+	}
+
+	public void debug(@Nullable Object where, @Nullable String format, double arg) {
+		if (isEnabled(LogType.TYPE_DEBUG)) {
+			log(LogType.TYPE_DEBUG, where, format, arg);
+		}
+	}
+
+	public void debug(@Nullable Object where, @Nullable String format, Object arg) {
+		if (isEnabled(LogType.TYPE_DEBUG)) {
+			log(LogType.TYPE_DEBUG, where, format, arg);
+		}
+	}
+
+	/**
+	 * Log debug with lazy message, `message` is called only when this log type is enabled.
+	 */
+	public void debug(@Nullable Object where, @Nullable DkCaller<String> message) {
+		if (isEnabled(LogType.TYPE_DEBUG)) {
+			// Lambda class identifies the call site
+			int suppressed = acquire(LogType.TYPE_DEBUG, where, message == null ? null : message.getClass());
+			if (suppressed >= 0) {
+				print(LogType.TYPE_DEBUG, where, message == null ? null : message.call(), suppressed);
+			}
+		}
+	}
+
 	/**
 	 * Log info.
 	 */
@@ -71,6 +252,43 @@ public class DkLogger {
 		log(LogType.TYPE_INFO, where, format, args);
 	}
 
+	public void info(@Nullable Object where, @Nullable String format, int arg) {
+		if (isEnabled(LogType.TYPE_INFO)) {
+			log(LogType.TYPE_INFO, where, format, arg);
+		}
+	}
+
+	public void info(@Nullable Object where, @Nullable String format, long arg) {
+		if (isEnabled(LogType.TYPE_INFO)) {
+			log(LogType.TYPE_INFO, where, format, arg);
+		}
+	}
+
+	public void info(@Nullable Object where, @Nullable String format, double arg) {
+		if (isEnabled(LogType.TYPE_INFO)) {
+			log(LogType.TYPE_INFO, where, format, arg);
+		}
+	}
+
+	public void info(@Nullable Object where, @Nullable String format, Object arg) {
+		if (isEnabled(LogType.TYPE_INFO)) {
+			log(LogType.TYPE_INFO, where, format, arg);
+		}
+	}
+
+	/**
+	 * Log info with lazy message, `message` is called only when this log type is enabled.
+	 */
+	public void info(@Nullable Object where, @Nullable DkCaller<String> message) {
+		if (isEnabled(LogType.TYPE_INFO)) {
+			// Lambda class identifies the call site
+			int suppressed = acquire(LogType.TYPE_INFO, where, message == null ? null : message.getClass());
+			if (suppressed >= 0) {
+				print(LogType.TYPE_INFO, where, message == null ? null : message.call(), suppressed);
+			}
+		}
+	}
+
 	/**
 	 * Log notice.
 	 */
@@ -103,7 +321,12 @@ public class DkLogger {
 	 * Log exception.
 	 */
 	public void error(@Nullable Object where, Throwable e, @Nullable String format, Object... args) {
-		log(LogType.TYPE_ERROR, where, MyLogging.beautifyError(e, format, args));
+		if (isEnabled(LogType.TYPE_ERROR)) {
+			int suppressed = acquire(LogType.TYPE_ERROR, where, format != null ? format : e.getClass());
+			if (suppressed >= 0) {
+				print(LogType.TYPE_ERROR, where, MyLogging.beautifyError(e, errorTraceDepth, format, args), suppressed);
+			}
+		}
 	}
 
 	/**
@@ -123,35 +346,139 @@ public class DkLogger {
 	// region: Protected
 
 	protected void log(int logType, @Nullable Object where, @Nullable String format, Object... args) {
+		// Check before formatting, so disabled log costs nearly nothing
+		if (logType < minLogType) {
+			return;
+		}
+
+		int suppressed = acquire(logType, where, format);
+		if (suppressed < 0) {
+			return;
+		}
+
 		String message = format;
 		if (args != null && args.length > 0) {
 			message = DkStrings.format(format, args);
 		}
 
-		logImpl.log(logType, makePrefix(logType, where) + message);
+		print(logType, where, message, suppressed);
 	}
 
-	protected String makePrefix(int logType, @Nullable Object where) {
-		String prefix = "~ ";
-		if (logType >= LogType.TYPE_NOTICE) {
-			prefix += "-----> ";
+	/**
+	 * @param suppressed Number of logs of same call site which were dropped by rate limiter.
+	 */
+	protected void print(int logType, @Nullable Object where, @Nullable String message, int suppressed) {
+		StringBuilder sb = new StringBuilder(64 + (message == null ? 4 : message.length()));
+		sb.append(makePrefix(logType, where));
+		sb.append(message);
+
+		if (suppressed > 0) {
+			sb.append(" [suppressed ").append(suppressed).append(" similar logs]");
+		}
+
+		String text = sb.toString();
+		DkCrashRecorder crashRecorder = this.crashRecorder;
+		if (crashRecorder != null) {
+			crashRecorder.record(logType, text);
+		}
+
+		logImpl.log(logType, text);
+	}
+
+	/**
+	 * Print structured event, by default fields are rendered as text after the message: `message key1=value1 key2=value2`.
+	 */
+	protected void logEvent(@NonNull DkLogEvent event, @Nullable String message) {
+		final int logType = event.logType();
+		final Object where = event.where();
+
+		// Message literal identifies the call site
+		int suppressed = acquire(logType, where, message);
+		if (suppressed < 0) {
+			return;
+		}
+
+		LogImpl logImpl = this.logImpl;
+		if (logImpl instanceof EventLogImpl) {
+			DkCrashRecorder crashRecorder = this.crashRecorder;
+			if (crashRecorder != null) {
+				StringBuilder sb = new StringBuilder(64);
+				sb.append(makePrefix(logType, where));
+				sb.append(message);
+				event.appendText(sb);
+				crashRecorder.record(logType, sb.toString());
+			}
+			((EventLogImpl) logImpl).log(event, message, suppressed);
+			return;
 		}
 
+		StringBuilder sb = new StringBuilder(64 + (message == null ? 0 : message.length()) + (event.fieldCount() << 4));
+		if (message != null) {
+			sb.append(message);
+		}
+		event.appendText(sb);
+
+		print(logType, where, sb.toString(), suppressed);
+	}
+
+	/**
+	 * @return Negative if the log should be dropped. Otherwise number of suppressed logs of the call site.
+	 */
+	private int acquire(int logType, @Nullable Object where, @Nullable Object formatKey) {
+		MyLogLimiter limiter = this.limiter;
+		if (limiter == null) {
+			return 0;
+		}
+		// Use class of `where`, so instances of same class are counted as same call site
+		Object whereKey = (where == null || where instanceof String || where instanceof Class) ? where : where.getClass();
+		return limiter.acquire(logType, whereKey, formatKey);
+	}
+
+	private void printSuppressed(int logType, @Nullable Object whereKey, @Nullable Object formatKey, int count) {
+		// Format is shown when known, lambda class of lazy message says nothing
+		String format = formatKey instanceof String ? (String) formatKey : "";
+		print(logType, whereKey, "[suppressed " + count + " similar logs] " + format, 0);
+	}
+
+	private synchronized void updateLimiter(int permitsPerSecond, int burst, double sampleRate) {
+		// Counts of old limiter would be lost, so report them now
+		flushSuppressed();
+
+		if (permitsPerSecond <= 0 && sampleRate >= 1) {
+			limiter = null;
+		}
+		else {
+			limiter = new MyLogLimiter(permitsPerSecond, burst, sampleRate, LogType.TYPE_WARNING);
+		}
+	}
+
+	/**
+	 * Override this to change prefix of all printed logs (text logs, and crash records of structured logs).
+	 */
+	protected String makePrefix(int logType, @Nullable Object where) {
+		StringBuilder sb = new StringBuilder(32);
+		appendPrefix(sb, logType, where);
+		return sb.toString();
+	}
+
+	private static void appendPrefix(StringBuilder sb, int logType, @Nullable Object where) {
 		if (where != null) {
-			String loc;
 			if (where instanceof String) {
-				loc = (String) where;
+				sb.append((String) where);
 			}
 			else if (where instanceof Class) {
-				loc = ((Class<?>) where).getSimpleName();
-				loc = loc.substring(loc.lastIndexOf('.') + 1);
+				String loc = ((Class<?>) where).getSimpleName();
+				sb.append(loc, loc.lastIndexOf('.') + 1, loc.length());
 			}
 			else {
-				loc = where.getClass().getSimpleName();
+				sb.append(where.getClass().getSimpleName());
 			}
-			return (loc + prefix);
 		}
-		return prefix;
+
+		sb.append("~ ");
+		if (logType >= LogType.TYPE_NOTICE) {
+			sb.append("-----> ");
+		}
 	}
 
 	// endregion: Protected
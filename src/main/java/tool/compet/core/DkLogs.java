@@ -6,8 +6,8 @@ package tool.compet.core;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * System console standard log. It also provide benchmark for debugging.
@@ -20,13 +20,59 @@ public class DkLogs implements DkLogger.LogType {
 	// Enable this to log back trace of current thread
 	public static boolean logBackTrace;
 
-	// For benchmark
-	private static ArrayDeque<Object[]> benchmarkTaskQueue;
+	// Max number of frames in back trace
+	public static int backTraceDepth = 10;
+
+	// Only capture back trace for 1-in-N logs, for eg,. set 100 to use back trace at production
+	public static int backTraceSampling = 1;
+	private static final AtomicInteger backTraceCounter = new AtomicInteger();
+
+	// Actual printer, it is replaced with async printer when async log is enabled
+	private static volatile DkLogger.LogImpl printer = DkLogs::printActual;
 
 	public static DkLogger logger() {
 		return logger != null ? logger : (logger = new DkLogger(DkLogs::logActual));
 	}
 
+	/**
+	 * Print logs on background thread, so log call does not block caller thread.
+	 * Note: call `flush()` at crash path to not lose pending logs.
+	 *
+	 * @param capacity Max number of pending logs.
+	 * @param overflowPolicy One of `DkAsyncLogImpl.OVERFLOW_*`.
+	 */
+	public static synchronized void enableAsync(int capacity, int overflowPolicy) {
+		if (! (printer instanceof DkAsyncLogImpl)) {
+			printer = new DkAsyncLogImpl(DkLogs::printActual, capacity, overflowPolicy);
+		}
+	}
+
+	/**
+	 * Print logs on caller thread again. Pending logs are printed (wait at most 1 second),
+	 * and background thread of async printer is stopped.
+	 */
+	public static synchronized void disableAsync() {
+		DkLogger.LogImpl printer = DkLogs.printer;
+		if (printer instanceof DkAsyncLogImpl) {
+			DkLogs.printer = DkLogs::printActual;
+			((DkAsyncLogImpl) printer).close(1, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Print suppressed counts of rate limiter, and wait (at most 1 second) until all pending logs
+	 * are printed when async log is enabled.
+	 */
+	public static void flush() {
+		if (logger != null) {
+			logger.flushSuppressed();
+		}
+		DkLogger.LogImpl printer = DkLogs.printer;
+		if (printer instanceof DkAsyncLogImpl) {
+			((DkAsyncLogImpl) printer).flush(1, TimeUnit.SECONDS);
+		}
+	}
+
 	/**
 	 * Log for testing, don't use at any env of apps or libraries.
 	 */
@@ -42,6 +88,29 @@ public class DkLogs implements DkLogger.LogType {
 		logger().debug(where, format, args);
 	}
 
+	public static void debug(@Nullable Object where, @Nullable String format, int arg) {
+		logger().debug(where, format, arg);
+	}
+
+	public static void debug(@Nullable Object where, @Nullable String format, long arg) {
+		logger().debug(where, format, arg);
+	}
+
+	public static void debug(@Nullable Object where, @Nullable String format, double arg) {
+		logger().debug(where, format, arg);
+	}
+
+	public static void debug(@Nullable Object where, @Nullable String format, Object arg) {
+		logger().debug(where, format, arg);
+	}
+
+	/**
+	 * Log debug with lazy message, `message` is called only when debug log is enabled.
+	 */
+	public static void debug(@Nullable Object where, DkCaller<String> message) {
+		logger().debug(where, message);
+	}
+
 	/**
 	 * Log info. Only run at debug env, so should wrap it with DEBUG.
 	 */
@@ -49,6 +118,29 @@ public class DkLogs implements DkLogger.LogType {
 		logger().info(where, format, args);
 	}
 
+	public static void info(@Nullable Object where, @Nullable String format, int arg) {
+		logger().info(where, format, arg);
+	}
+
+	public static void info(@Nullable Object where, @Nullable String format, long arg) {
+		logger().info(where, format, arg);
+	}
+
+	public static void info(@Nullable Object where, @Nullable String format, double arg) {
+		logger().info(where, format, arg);
+	}
+
+	public static void info(@Nullable Object where, @Nullable String format, Object arg) {
+		logger().info(where, format, arg);
+	}
+
+	/**
+	 * Log info with lazy message, `message` is called only when info log is enabled.
+	 */
+	public static void info(@Nullable Object where, DkCaller<String> message) {
+		logger().info(where, message);
+	}
+
 	/**
 	 * Log notice. Only run at debug env, so should wrap it with DEBUG.
 	 */
@@ -130,14 +222,12 @@ public class DkLogs implements DkLogger.LogType {
 
 	/**
 	 * Start benchmark. Only run at debug env, so should wrap it with DEBUG.
+	 * Benchmarks are nestable and per-thread, and are also collected by {@link DkTraces} when it is enabled.
 	 */
 	public static void tick(@Nullable Object where, String task) {
 		if (BuildConfig.DEBUG) {
-			if (benchmarkTaskQueue == null) {
-				benchmarkTaskQueue = new ArrayDeque<>();
-			}
-			benchmarkTaskQueue.push(new Object[] {task, System.currentTimeMillis()});
-			logger().debug(where, "Start task [%s]", task);;
+			DkTraces.stack().push(task);
+			logger().debug(where, "Start task [%s]", task);
 		}
 	}
 
@@ -146,22 +236,24 @@ public class DkLogs implements DkLogger.LogType {
 	 */
 	public static void tock(@Nullable Object where) {
 		if (BuildConfig.DEBUG) {
-			Object[] taskInfo = benchmarkTaskQueue.pop();
-			logger().debug(where, "End task [%s] in %d ms", (String) taskInfo[0], System.currentTimeMillis() - (long) taskInfo[1]);
+			DkTraces.SpanStack stack = DkTraces.stack();
+			long elapsedNanos = stack.pop();
+			if (elapsedNanos >= 0) {
+				logger().debug(where, "End task [%s] in %.3f ms", stack.lastName, elapsedNanos / 1e6);
+			}
 		}
 	}
 
 	private static void logActual(int logType, String message) {
-		if (logBackTrace) {
-			ArrayList<String> descriptions = new ArrayList<>();
-			for (StackTraceElement elm : Thread.currentThread().getStackTrace()) {
-				String description = DkStrings.format("%s (%d) ==> %s.%s()", elm.getFileName(), elm.getLineNumber(), elm.getClassName(), elm.getMethodName());
-				descriptions.add(description);
-			}
-			String trace = DkStrings.join('\n', descriptions);
-			message += "\nStack Trace:\n" + trace;
+		if (logBackTrace && (backTraceSampling <= 1 || backTraceCounter.getAndIncrement() % backTraceSampling == 0)) {
+			message += MyLogging.beautifyBacktrace(backTraceDepth);
 		}
 
+		// Back trace must be captured at caller thread, so only printing is delegated
+		printer.log(logType, message);
+	}
+
+	private static void printActual(int logType, String message) {
 		String logName = DkLogger.LogType.name(logType);
 
 		switch (logType) {
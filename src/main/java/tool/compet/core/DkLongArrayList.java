@@ -4,6 +4,8 @@
 
 package tool.compet.core;
 
+import androidx.annotation.NonNull;
+
 /**
  * This is performance-better version of {@link java.util.ArrayList} for primitive type.
  *
@@ -245,6 +247,15 @@ public class DkLongArrayList extends TheBaseArrayList {
 		return result;
 	}
 
+	/**
+	 * Compose elements as `[e1, e2, ...]`, digits are written into exactly sized buffer.
+	 */
+	@NonNull
+	@Override
+	public String toString() {
+		return MyDigits.join(this.arr, this.size, "[", ", ", "]");
+	}
+
 	// Make internal array bigger enough to make its capacity greater than given `minCapacity`.
 	private void growCapacity(int minCapacity) {
 		int newCapacity = MyArrayHelper.calcNextCapacity(this.arr.length, minCapacity, Integer.MAX_VALUE - 8);
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Writes number as decimal text directly into char array, DkByteArrayList (ASCII) or StringBuilder,
+ * so no intermediate String is made. Output is same as `String.valueOf()`.
+ *
+ * Integer is written two digits at a time with lookup tables.
+ * Double (float) in plain range [1e-3, 1e7) which has a short decimal form (at most 15 significant
+ * digits for double, 7 for float) is written directly, the decimal is checked to round-trip.
+ * Other values fall back to `Double.toString()` (`Float.toString()`).
+ */
+public class DkNumberFormatter {
+	// Max chars of long, and of double in any form
+	public static final int MAX_LONG_CHARS = 20;
+	public static final int MAX_DOUBLE_CHARS = 26;
+
+	private static final double[] DOUBLE_POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+	};
+	private static final float[] FLOAT_POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+	private static final long[] LONG_POW10 = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L,
+		100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L,
+		10000000000000000L, 100000000000000000L, 1000000000000000000L
+	};
+
+	private static final long MAX_DOUBLE_MANTISSA = 1_000_000_000_000_000L; // 15 digits
+	private static final long MAX_FLOAT_MANTISSA = 10_000_000L; // 7 digits
+
+	/**
+	 * @return Number of chars of given value in decimal, include minus sign.
+	 */
+	public static int stringSize(long value) {
+		return MyDigits.stringSize(value);
+	}
+
+	/**
+	 * Write given value at `offset`, caller must ensure `MAX_LONG_CHARS` chars are available.
+	 *
+	 * @return Offset after last written char.
+	 */
+	public static int write(long value, @NonNull char[] buf, int offset) {
+		final int end = offset + MyDigits.stringSize(value);
+		MyDigits.getChars(value, end, buf);
+		return end;
+	}
+
+	/**
+	 * Write given value at `offset`, caller must ensure `MAX_DOUBLE_CHARS` chars are available.
+	 *
+	 * @return Offset after last written char.
+	 */
+	public static int write(double value, @NonNull char[] buf, int offset) {
+		long decimal = shortDecimal(value);
+		if (decimal < 0) {
+			String s = Double.toString(value);
+			s.getChars(0, s.length(), buf, offset);
+			return offset + s.length();
+		}
+		return writeDecimal(value < 0, decimal >>> 5, (int) decimal & 31, buf, offset);
+	}
+
+	public static int write(float value, @NonNull char[] buf, int offset) {
+		long decimal = shortDecimal(value);
+		if (decimal < 0) {
+			String s = Float.toString(value);
+			s.getChars(0, s.length(), buf, offset);
+			return offset + s.length();
+		}
+		return writeDecimal(value < 0, decimal >>> 5, (int) decimal & 31, buf, offset);
+	}
+
+	/**
+	 * Append given value as ASCII bytes, digits are written directly into backing array of the list.
+	 */
+	public static void append(@NonNull DkByteArrayList out, long value) {
+		out.ensureCapacity(out.size + MAX_LONG_CHARS);
+		final int end = out.size + MyDigits.stringSize(value);
+		MyDigits.getBytes(value, end, out.getCurrentArray());
+		out.size = end;
+	}
+
+	public static void append(@NonNull DkByteArrayList out, double value) {
+		long decimal = shortDecimal(value);
+		if (decimal < 0) {
+			appendAscii(out, Double.toString(value));
+			return;
+		}
+		out.ensureCapacity(out.size + MAX_DOUBLE_CHARS);
+		out.size = writeDecimal(value < 0, decimal >>> 5, (int) decimal & 31, out.getCurrentArray(), out.size);
+	}
+
+	public static void append(@NonNull DkByteArrayList out, float value) {
+		long decimal = shortDecimal(value);
+		if (decimal < 0) {
+			appendAscii(out, Float.toString(value));
+			return;
+		}
+		out.ensureCapacity(out.size + MAX_DOUBLE_CHARS);
+		out.size = writeDecimal(value < 0, decimal >>> 5, (int) decimal & 31, out.getCurrentArray(), out.size);
+	}
+
+	/**
+	 * Same as `sb.append(value)` but does not make intermediate String for common values.
+	 */
+	public static void append(@NonNull StringBuilder sb, double value) {
+		long decimal = shortDecimal(value);
+		if (decimal < 0) {
+			sb.append(value);
+			return;
+		}
+		appendDecimal(sb, value < 0, decimal >>> 5, (int) decimal & 31);
+	}
+
+	public static void append(@NonNull StringBuilder sb, float value) {
+		long decimal = shortDecimal(value);
+		if (decimal < 0) {
+			sb.append(value);
+			return;
+		}
+		appendDecimal(sb, value < 0, decimal >>> 5, (int) decimal & 31);
+	}
+
+	// region: Private
+
+	/**
+	 * Find smallest `k` such that `|value| = m / 10^k` exactly after rounding (so the decimal round-trips).
+	 *
+	 * @return `(m << 5) | k`, or -1 if value is not in plain range or has no short decimal.
+	 */
+	private static long shortDecimal(double value) {
+		final double abs = Math.abs(value);
+		if (! (abs >= 1e-3 && abs < 1e7)) {
+			return -1;
+		}
+		for (int k = 0; k < DOUBLE_POW10.length; ++k) {
+			final double m = Math.rint(abs * DOUBLE_POW10[k]);
+			if (m >= MAX_DOUBLE_MANTISSA) {
+				return -1;
+			}
+			// Both operands are exact, so division is correctly rounded like parser does
+			if (m / DOUBLE_POW10[k] == abs) {
+				return ((long) m << 5) | k;
+			}
+		}
+		return -1;
+	}
+
+	private static long shortDecimal(float value) {
+		final float abs = Math.abs(value);
+		if (! (abs >= 1e-3f && abs < 1e7f)) {
+			return -1;
+		}
+		for (int k = 0; k < FLOAT_POW10.length; ++k) {
+			final float m = (float) Math.rint(abs * (double) FLOAT_POW10[k]);
+			if (m >= MAX_FLOAT_MANTISSA) {
+				return -1;
+			}
+			if (m / FLOAT_POW10[k] == abs) {
+				return ((long) m << 5) | k;
+			}
+		}
+		return -1;
+	}
+
+	// Write `-m / 10^k` as `intPart.fraction`, fraction has k digits (or "0" if k is 0)
+	private static int writeDecimal(boolean negative, long m, int k, char[] buf, int pos) {
+		if (negative) {
+			buf[pos++] = '-';
+		}
+		final long intPart = m / LONG_POW10[k];
+		pos = write(intPart, buf, pos);
+		buf[pos++] = '.';
+
+		if (k == 0) {
+			buf[pos++] = '0';
+			return pos;
+		}
+		final int end = pos + k;
+		int start = MyDigits.getChars(m - intPart * LONG_POW10[k], end, buf);
+		while (start > pos) {
+			buf[--start] = '0';
+		}
+		return end;
+	}
+
+	// Same as `writeDecimal()` for chars
+	private static int writeDecimal(boolean negative, long m, int k, byte[] buf, int pos) {
+		if (negative) {
+			buf[pos++] = '-';
+		}
+		final long intPart = m / LONG_POW10[k];
+		pos += MyDigits.stringSize(intPart);
+		MyDigits.getBytes(intPart, pos, buf);
+		buf[pos++] = '.';
+
+		if (k == 0) {
+			buf[pos++] = '0';
+			return pos;
+		}
+		final int end = pos + k;
+		int start = MyDigits.getBytes(m - intPart * LONG_POW10[k], end, buf);
+		while (start > pos) {
+			buf[--start] = '0';
+		}
+		return end;
+	}
+
+	private static void appendDecimal(StringBuilder sb, boolean negative, long m, int k) {
+		if (negative) {
+			sb.append('-');
+		}
+		final long intPart = m / LONG_POW10[k];
+		sb.append(intPart).append('.');
+
+		if (k == 0) {
+			sb.append('0');
+			return;
+		}
+		final long fraction = m - intPart * LONG_POW10[k];
+		for (int zeroCount = k - MyDigits.stringSize(fraction); zeroCount > 0; --zeroCount) {
+			sb.append('0');
+		}
+		sb.append(fraction);
+	}
+
+	private static void appendAscii(DkByteArrayList out, String s) {
+		final int length = s.length();
+		out.ensureCapacity(out.size + length);
+		final byte[] buf = out.getCurrentArray();
+		int pos = out.size;
+		for (int index = 0; index < length; ++index) {
+			buf[pos++] = (byte) s.charAt(index);
+		}
+		out.size = pos;
+	}
+
+	// endregion: Private
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Parse number from range of CharSequence without throwing exception, invalid input results given default value.
+ * Accepted syntax is same as `Integer.parseInt()`, `Long.parseLong()`, `Double.parseDouble()` and `Float.parseFloat()`,
+ * except that only ASCII digits are accepted for integer.
+ *
+ * Nothing is allocated for integer and for common decimal (at most 18 significant digits, small exponent),
+ * which is computed exactly with one multiplication or division. Other decimal is first validated,
+ * then passed to Java parser (as String), so it never throws.
+ */
+public class DkNumberParser {
+	// Exact powers of ten in double (10^22 is the largest one)
+	private static final double[] DOUBLE_POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	// Exact powers of ten in float
+	private static final float[] FLOAT_POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+	private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+	private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+
+	public static int parseInt(@Nullable CharSequence s, int defaultValue) {
+		return s == null ? defaultValue : parseInt(s, 0, s.length(), defaultValue);
+	}
+
+	/**
+	 * Parse decimal int in range [start, end) of given sequence.
+	 *
+	 * @return Parsed value, or `defaultValue` if the range is not a valid int.
+	 */
+	public static int parseInt(@Nullable CharSequence s, int start, int end, int defaultValue) {
+		return (int) parseInteger(s, start, end, defaultValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	public static long parseLong(@Nullable CharSequence s, long defaultValue) {
+		return s == null ? defaultValue : parseLong(s, 0, s.length(), defaultValue);
+	}
+
+	/**
+	 * Parse decimal long in range [start, end) of given sequence.
+	 *
+	 * @return Parsed value, or `defaultValue` if the range is not a valid long.
+	 */
+	public static long parseLong(@Nullable CharSequence s, int start, int end, long defaultValue) {
+		return parseInteger(s, start, end, defaultValue, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	public static double parseDouble(@Nullable CharSequence s, double defaultValue) {
+		return s == null ? defaultValue : parseDouble(s, 0, s.length(), defaultValue);
+	}
+
+	/**
+	 * Parse decimal double in range [start, end) of given sequence.
+	 *
+	 * @return Parsed value, or `defaultValue` if the range is not a valid double.
+	 */
+	public static double parseDouble(@Nullable CharSequence s, int start, int end, double defaultValue) {
+		return parseDecimal(s, start, end, defaultValue, false);
+	}
+
+	public static float parseFloat(@Nullable CharSequence s, float defaultValue) {
+		return s == null ? defaultValue : parseFloat(s, 0, s.length(), defaultValue);
+	}
+
+	/**
+	 * Parse decimal float in range [start, end) of given sequence.
+	 *
+	 * @return Parsed value, or `defaultValue` if the range is not a valid float.
+	 */
+	public static float parseFloat(@Nullable CharSequence s, int start, int end, float defaultValue) {
+		// Float value is exactly representable in double, so casting back is lossless
+		return (float) parseDecimal(s, start, end, defaultValue, true);
+	}
+
+	// region: Private
+
+	private static long parseInteger(CharSequence s, int start, int end, long defaultValue, long minValue, long maxValue) {
+		if (s == null || start >= end) {
+			return defaultValue;
+		}
+
+		boolean negative = false;
+		char first = s.charAt(start);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++start == end) {
+				return defaultValue;
+			}
+		}
+
+		// Accumulate negatively like Long.parseLong(), so min value does not overflow
+		final long limit = negative ? minValue : -maxValue;
+		final long multiplyMin = limit / 10;
+		long result = 0;
+
+		for (int index = start; index < end; ++index) {
+			int digit = s.charAt(index) - '0';
+			if (digit < 0 || digit > 9 || result < multiplyMin) {
+				return defaultValue;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return defaultValue;
+			}
+			result -= digit;
+		}
+
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Parse with syntax of `Double.parseDouble()`: optional whitespace, sign,
+	 * `NaN`, `Infinity`, or `digits[.digits][(e|E)[sign]digits][f|F|d|D]`.
+	 * Hex float is only validated here, then decoded by Java parser.
+	 */
+	private static double parseDecimal(CharSequence s, final int start, final int end, double defaultValue, boolean toFloat) {
+		if (s == null) {
+			return defaultValue;
+		}
+
+		// Same as String.trim()
+		int index = start;
+		int stop = end;
+		while (index < stop && s.charAt(index) <= ' ') {
+			++index;
+		}
+		while (stop > index && s.charAt(stop - 1) <= ' ') {
+			--stop;
+		}
+		if (index >= stop) {
+			return defaultValue;
+		}
+
+		boolean negative = false;
+		char ch = s.charAt(index);
+		if (ch == '-' || ch == '+') {
+			negative = ch == '-';
+			if (++index == stop) {
+				return defaultValue;
+			}
+			ch = s.charAt(index);
+		}
+
+		if (ch == 'N') {
+			return matches(s, index, stop, "NaN") ? Double.NaN : defaultValue;
+		}
+		if (ch == 'I') {
+			return matches(s, index, stop, "Infinity") ? (negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY) : defaultValue;
+		}
+		if (ch == '0' && index + 1 < stop && (s.charAt(index + 1) | 0x20) == 'x') {
+			return isHexFloat(s, index + 2, stop) ? parseByJava(s, start, end, toFloat) : defaultValue;
+		}
+
+		// Optional type suffix
+		char last = s.charAt(stop - 1);
+		if (last == 'f' || last == 'F' || last == 'd' || last == 'D') {
+			--stop;
+		}
+
+		// Value is `mantissa * 10^exponent`, at most 18 significant digits are kept in mantissa (always fit in long)
+		long mantissa = 0;
+		int exponent = 0;
+		int significantDigits = 0;
+		int digitCount = 0;
+		boolean exact = true;
+
+		// Integer part
+		for (; index < stop && (ch = s.charAt(index)) >= '0' && ch <= '9'; ++index, ++digitCount) {
+			if (significantDigits < 18) {
+				mantissa = mantissa * 10 + (ch - '0');
+				if (mantissa != 0) {
+					++significantDigits;
+				}
+			}
+			else {
+				++exponent;
+				exact &= ch == '0';
+			}
+		}
+
+		// Fraction part
+		if (index < stop && s.charAt(index) == '.') {
+			for (++index; index < stop && (ch = s.charAt(index)) >= '0' && ch <= '9'; ++index, ++digitCount) {
+				if (significantDigits < 18) {
+					mantissa = mantissa * 10 + (ch - '0');
+					--exponent;
+					if (mantissa != 0) {
+						++significantDigits;
+					}
+				}
+				else {
+					exact &= ch == '0';
+				}
+			}
+		}
+		if (digitCount == 0) {
+			return defaultValue;
+		}
+
+		// Exponent part
+		if (index < stop && (s.charAt(index) | 0x20) == 'e') {
+			if (++index == stop) {
+				return defaultValue;
+			}
+			boolean negativeExponent = false;
+			ch = s.charAt(index);
+			if (ch == '-' || ch == '+') {
+				negativeExponent = ch == '-';
+				if (++index == stop) {
+					return defaultValue;
+				}
+			}
+			int explicitExponent = 0;
+			int exponentStart = index;
+			for (; index < stop && (ch = s.charAt(index)) >= '0' && ch <= '9'; ++index) {
+				// Clamp, result is 0 or Infinity anyway
+				if (explicitExponent < 100_000) {
+					explicitExponent = explicitExponent * 10 + (ch - '0');
+				}
+			}
+			if (index == exponentStart) {
+				return defaultValue;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		if (index != stop) {
+			return defaultValue;
+		}
+
+		// Fast path: mantissa and power of ten are exact, so one operation gives correctly rounded result
+		if (mantissa == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+		if (exact) {
+			if (toFloat) {
+				if (mantissa <= MAX_EXACT_FLOAT_MANTISSA && exponent >= -10 && exponent <= 10) {
+					float value = exponent >= 0 ? mantissa * FLOAT_POW10[exponent] : mantissa / FLOAT_POW10[-exponent];
+					return negative ? -value : value;
+				}
+			}
+			else if (mantissa <= MAX_EXACT_DOUBLE_MANTISSA && exponent >= -22 && exponent <= 22) {
+				double value = exponent >= 0 ? mantissa * DOUBLE_POW10[exponent] : mantissa / DOUBLE_POW10[-exponent];
+				return negative ? -value : value;
+			}
+		}
+
+		// Syntax was validated, so Java parser does not throw
+		return parseByJava(s, start, end, toFloat);
+	}
+
+	private static double parseByJava(CharSequence s, int start, int end, boolean toFloat) {
+		String text = s.subSequence(start, end).toString();
+		return toFloat ? Float.parseFloat(text) : Double.parseDouble(text);
+	}
+
+	private static boolean matches(CharSequence s, int start, int end, String word) {
+		if (end - start != word.length()) {
+			return false;
+		}
+		for (int index = word.length() - 1; index >= 0; --index) {
+			if (s.charAt(start + index) != word.charAt(index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Syntax: hexDigits[.hexDigits](p|P)[sign]digits[f|F|d|D]
+	private static boolean isHexFloat(CharSequence s, int index, int end) {
+		char last = s.charAt(end - 1);
+		if (last == 'f' || last == 'F' || last == 'd' || last == 'D') {
+			--end;
+		}
+		int digitCount = 0;
+		boolean dot = false;
+		for (; index < end; ++index) {
+			char ch = s.charAt(index);
+			if ((ch >= '0' && ch <= '9') || ((ch | 0x20) >= 'a' && (ch | 0x20) <= 'f')) {
+				++digitCount;
+			}
+			else if (ch == '.' && ! dot) {
+				dot = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (digitCount == 0 || index >= end || (s.charAt(index) | 0x20) != 'p') {
+			return false;
+		}
+		if (++index < end && (s.charAt(index) == '-' || s.charAt(index) == '+')) {
+			++index;
+		}
+		if (index >= end) {
+			return false;
+		}
+		for (; index < end; ++index) {
+			char ch = s.charAt(index);
+			if (ch < '0' || ch > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// endregion: Private
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fan-out/fan-in helpers which run on the shared pool of {@link DkExecutorService}.
+ * All of them wait until sub-tasks finished, propagate the first failure to caller,
+ * and cancel sibling tasks when some task failed.
+ */
+public class DkParallels {
+	/**
+	 * Map each item of given `items` to a result in parallel, result order is same as input order.
+	 *
+	 * Items are split into a few chunks per core (instead of one task per item), and chunks are
+	 * claimed by both of pool threads and the caller thread. So this does not deadlock even if
+	 * it is called from a thread of the pool, since caller can finish all chunks by itself.
+	 *
+	 * @throws RuntimeException First exception which was thrown from `mapper`.
+	 */
+	@NonNull
+	public static <A, R> List<R> parallelMap(@NonNull List<A> items, @NonNull DkCaller1<A, R> mapper) {
+		final int N = items.size();
+		final Object[] results = new Object[N];
+
+		if (N == 0) {
+			return new ArrayList<>();
+		}
+
+		final ScheduledThreadPoolExecutor executor = DkExecutorService.getExecutor();
+		final int parallelism = Math.min(N, executor.getCorePoolSize() + 1);
+
+		// Use some chunks per worker so fast workers can take more chunks than slow workers
+		final int chunkCount = Math.min(N, parallelism << 2);
+		final int chunkSize = (N + chunkCount - 1) / chunkCount;
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final CountDownLatch doneChunks = new CountDownLatch(chunkCount);
+
+		// Written by caller, read by worker which failed
+		final List<Future<?>> helpers = new CopyOnWriteArrayList<>();
+
+		final Runnable worker = () -> {
+			int chunk;
+			while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+				try {
+					// Skip remaining items (and chunks) when some item was failed
+					for (int index = chunk * chunkSize, end = Math.min(N, index + chunkSize); index < end && failure.get() == null; ++index) {
+						results[index] = mapper.call(items.get(index));
+					}
+				}
+				catch (Throwable e) {
+					if (failure.compareAndSet(null, e)) {
+						// Interrupt running helpers, so blocking mapper can stop early
+						for (Future<?> helper : helpers) {
+							helper.cancel(true);
+						}
+					}
+				}
+				finally {
+					doneChunks.countDown();
+				}
+			}
+		};
+
+		for (int index = parallelism - 2; index >= 0; --index) {
+			helpers.add(executor.submit(worker));
+		}
+
+		// Caller also works, and at least can finish all chunks by itself
+		worker.run();
+
+		try {
+			doneChunks.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, e);
+		}
+		finally {
+			// Not-yet-started helpers have nothing to do, just remove them from pool queue
+			for (Future<?> helper : helpers) {
+				helper.cancel(false);
+			}
+		}
+
+		Throwable e = failure.get();
+		if (e != null) {
+			throw asRuntimeException(e);
+		}
+
+		// Each slot was set by `mapper`, so it is R
+		@SuppressWarnings("unchecked")
+		final List<R> resultList = (List<R>) new ArrayList<>(Arrays.asList(results));
+		return resultList;
+	}
+
+	/**
+	 * Run all given tasks in parallel and wait until all of them completed.
+	 *
+	 * @return Results in same order with given `tasks`.
+	 * @throws Exception First exception from some task. Other tasks are cancelled at that time.
+	 */
+	@NonNull
+	public static <R> List<R> invokeAll(@NonNull List<DkCallable<R>> tasks) throws Exception {
+		return invokeAll(tasks, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Run all given tasks in parallel and wait until all of them completed before deadline.
+	 *
+	 * @return Results in same order with given `tasks`.
+	 * @throws TimeoutException When deadline passed. Unfinished tasks are cancelled at that time.
+	 * @throws Exception First exception from some task. Other tasks are cancelled at that time.
+	 */
+	@NonNull
+	public static <R> List<R> invokeAll(@NonNull List<DkCallable<R>> tasks, long timeout, TimeUnit unit) throws Exception {
+		try (DkTaskScope scope = new DkTaskScope()) {
+			List<Future<R>> futures = new ArrayList<>(tasks.size());
+			for (DkCallable<R> task : tasks) {
+				futures.add(scope.fork(task));
+			}
+
+			scope.join(timeout, unit);
+
+			List<R> results = new ArrayList<>(futures.size());
+			for (Future<R> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * Run all given tasks in parallel, and take result of the first task which succeeded.
+	 * Other tasks are cancelled after that.
+	 *
+	 * @throws Exception Exception of the last failed task when all tasks failed.
+	 */
+	public static <R> R race(@NonNull List<DkCallable<R>> tasks) throws Exception {
+		return race(tasks, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Run all given tasks in parallel, and take result of the first task which succeeded before deadline.
+	 * Other tasks are cancelled after that.
+	 *
+	 * @throws TimeoutException When no task succeeded before deadline.
+	 * @throws Exception Exception of the last failed task when all tasks failed.
+	 */
+	public static <R> R race(@NonNull List<DkCallable<R>> tasks, long timeout, TimeUnit unit) throws Exception {
+		final int N = tasks.size();
+		if (N == 0) {
+			throw new IllegalArgumentException("Require at least one task");
+		}
+
+		final long deadline = calcDeadline(timeout, unit);
+		ExecutorCompletionService<R> completionService = new ExecutorCompletionService<>(DkExecutorService.getExecutor());
+		List<Future<R>> futures = new ArrayList<>(N);
+		Exception lastError = null;
+
+		try {
+			for (DkCallable<R> task : tasks) {
+				futures.add(completionService.submit(task::call));
+			}
+
+			for (int remain = N; remain > 0; --remain) {
+				Future<R> future = completionService.poll(remainNanos(deadline), TimeUnit.NANOSECONDS);
+				if (future == null) {
+					throw new TimeoutException("No task succeeded before deadline");
+				}
+				try {
+					return future.get();
+				}
+				catch (ExecutionException e) {
+					lastError = unwrap(e);
+				}
+			}
+			throw lastError;
+		}
+		finally {
+			for (Future<R> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	// region: Package
+
+	static long calcDeadline(long timeout, TimeUnit unit) {
+		final long now = System.nanoTime();
+		final long nanos = Math.max(0, unit.toNanos(timeout));
+
+		// Saturate at overflow (nanoTime() may be negative, so `MAX - now` may overflow too),
+		// MAX value means no deadline, see `remainNanos()`
+		final long deadline = now + nanos;
+		return (nanos > 0 && deadline < now) ? Long.MAX_VALUE : deadline;
+	}
+
+	/**
+	 * @return Nanoseconds until given deadline which was made by `calcDeadline()`.
+	 */
+	static long remainNanos(long deadline) {
+		return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+	}
+
+	static Exception unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof Exception) {
+			return (Exception) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return e;
+	}
+
+	static RuntimeException asRuntimeException(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new RuntimeException(e);
+	}
+
+	// endregion: Package
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes tasks in FIFO order per key (file path, user id...), but tasks of different keys
+ * can run concurrently on the shared pool of {@link DkExecutorService}.
+ *
+ * Keys are hashed into a fixed number of stripes, each stripe is a lock-free queue which
+ * is drained by at most one pool thread at a time. So idle keys cost no memory, but
+ * different keys which fall into same stripe are also run serially.
+ */
+public class DkSerialExecutor {
+	// Max number of tasks a lane runs before it yields pool thread for other lanes
+	private static final int DRAIN_BATCH_SIZE = 64;
+
+	private final Lane[] lanes;
+	private final int mask;
+
+	/**
+	 * Use 16 stripes per core.
+	 */
+	public DkSerialExecutor() {
+		this(Runtime.getRuntime().availableProcessors() << 4);
+	}
+
+	/**
+	 * @param stripeCount Number of lanes, will be rounded up to power of 2.
+	 */
+	public DkSerialExecutor(int stripeCount) {
+		int capacity = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+		this.lanes = new Lane[capacity];
+		this.mask = capacity - 1;
+
+		for (int index = capacity - 1; index >= 0; --index) {
+			this.lanes[index] = new Lane();
+		}
+	}
+
+	/**
+	 * Run given task after all previous tasks of same key were run.
+	 * Exception from task will be logged, and does not stop other tasks.
+	 *
+	 * @throws java.util.concurrent.RejectedExecutionException When pool rejected the lane (for eg,. after shutdown),
+	 * in that case only given task is not run. If other tasks were queued behind it meanwhile and the lane still
+	 * cannot be scheduled, they are dropped (submitted futures are cancelled) and logged.
+	 */
+	public void execute(@NonNull Object key, @NonNull DkRunnable task) {
+		laneOf(key).enqueue(task);
+	}
+
+	/**
+	 * Same as {@link #execute(Object, DkRunnable)}, but caller can wait for result or exception via the future.
+	 */
+	@NonNull
+	public <R> Future<R> submit(@NonNull Object key, @NonNull DkCallable<R> task) {
+		SubmittedTask<R> future = new SubmittedTask<>(task);
+		laneOf(key).enqueue(future);
+		return future;
+	}
+
+	private Lane laneOf(Object key) {
+		int hash = key.hashCode();
+		return lanes[(hash ^ (hash >>> 16)) & mask];
+	}
+
+	/**
+	 * Count of pending tasks is used as ownership: who increases it from 0 must schedule drain,
+	 * and drainer stops only after it decreased the count to 0.
+	 */
+	private static class Lane implements Runnable {
+		private final ConcurrentLinkedQueue<DkRunnable> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pendingCount = new AtomicInteger();
+
+		void enqueue(DkRunnable task) {
+			queue.offer(task);
+
+			if (pendingCount.getAndIncrement() == 0) {
+				try {
+					DkExecutorService.getExecutor().execute(this);
+				}
+				catch (RuntimeException e) {
+					// Only given task fails, take it back but keep ownership for tasks of other callers
+					queue.remove(task);
+					if (pendingCount.decrementAndGet() > 0) {
+						scheduleOrDrop();
+					}
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			for (int count = DRAIN_BATCH_SIZE; count > 0; --count) {
+				DkRunnable task = queue.poll();
+
+				try {
+					// Null when counted task was already run by previous poll (it was offered before counted)
+					if (task != null) {
+						task.run();
+					}
+				}
+				catch (Throwable e) {
+					DkLogs.error(this, e, "Task of serial lane was failed");
+				}
+
+				if (pendingCount.decrementAndGet() == 0) {
+					return;
+				}
+			}
+
+			// Still have pending tasks, re-schedule to give other lanes a chance
+			scheduleOrDrop();
+		}
+
+		/**
+		 * Called by owner of the lane (count is non-zero) to drain pending tasks on the pool.
+		 * When pool rejects, nobody would drain them, so drop them and release ownership,
+		 * otherwise count stays above 0 and later tasks are never scheduled.
+		 */
+		private void scheduleOrDrop() {
+			try {
+				DkExecutorService.getExecutor().execute(this);
+				return;
+			}
+			catch (RuntimeException e) {
+				DkLogs.error(this, e, "Could not schedule serial lane");
+			}
+
+			int droppedCount = 0;
+			do {
+				DkRunnable task = queue.poll();
+				if (task != null) {
+					++droppedCount;
+					// Caller may be waiting for result
+					if (task instanceof Future) {
+						((Future<?>) task).cancel(false);
+					}
+				}
+			}
+			while (pendingCount.decrementAndGet() > 0);
+
+			DkLogs.warning(this, "Dropped %d pending tasks of serial lane", droppedCount);
+		}
+	}
+
+	/**
+	 * Future of submitted task, it is queued as is, so it can be cancelled when the lane drops it.
+	 */
+	private static class SubmittedTask<R> extends FutureTask<R> implements DkRunnable {
+		SubmittedTask(DkCallable<R> task) {
+			super(task::call);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool which deduplicates repeated strings (tokens, column values, lines...),
+ * so same text is kept as one String instance in heap.
+ *
+ * Text can be given as slice of char array or CharSequence, it is hashed and compared directly,
+ * so a String is only made when the text is not in pool yet.
+ *
+ * Pool is a fixed table of 2-way buckets (no lock): a hit moves the entry to front of its bucket,
+ * a miss puts new entry to front and evicts the back one. So memory is bounded by capacity,
+ * and frequently used strings stay while rarely used ones are evicted (approximate LRU).
+ * Under race, an entry may be lost, but result is always a string which equals to given text.
+ */
+public class DkStringPool {
+	private static DkStringPool shared;
+
+	private final AtomicReferenceArray<String> table;
+	private final int mask;
+	private final int maxLength;
+
+	/**
+	 * @return Pool which is shared in app (4096 entries, strings of at most 64 chars).
+	 */
+	@NonNull
+	public static synchronized DkStringPool shared() {
+		return shared != null ? shared : (shared = new DkStringPool(4096, 64));
+	}
+
+	/**
+	 * @param capacity Max number of pooled strings, rounded up to power of 2.
+	 * @param maxLength Longer text is not pooled since it is rarely repeated.
+	 */
+	public DkStringPool(int capacity, int maxLength) {
+		capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+		this.table = new AtomicReferenceArray<>(capacity);
+		this.mask = capacity - 2; // index of first slot of bucket
+		this.maxLength = maxLength;
+	}
+
+	@Nullable
+	public String intern(@Nullable String s) {
+		if (s == null || s.length() > maxLength) {
+			return s;
+		}
+		return intern(s, 0, s.length(), s);
+	}
+
+	/**
+	 * @return Pooled string which equals to chars in range [start, end) of given sequence.
+	 */
+	@NonNull
+	public String intern(@NonNull CharSequence s, int start, int end) {
+		return intern(s, start, end, null);
+	}
+
+	/**
+	 * @return Pooled string which equals to chars in range [start, end) of given array.
+	 */
+	@NonNull
+	public String intern(@NonNull char[] chars, int start, int end) {
+		final int length = end - start;
+		if (length > maxLength) {
+			return new String(chars, start, length);
+		}
+
+		int hash = 0;
+		for (int index = start; index < end; ++index) {
+			hash = 31 * hash + chars[index];
+		}
+
+		final int slot = spread(hash) & mask;
+		String candidate = table.get(slot);
+		if (candidate != null && candidate.hashCode() == hash && contentEquals(candidate, chars, start, length)) {
+			return candidate;
+		}
+		String other = table.get(slot + 1);
+		if (other != null && other.hashCode() == hash && contentEquals(other, chars, start, length)) {
+			promote(slot, candidate, other);
+			return other;
+		}
+
+		String result = new String(chars, start, length);
+		put(slot, candidate, result);
+		return result;
+	}
+
+	public int capacity() {
+		return table.length();
+	}
+
+	/**
+	 * Remove all pooled strings.
+	 */
+	public void clear() {
+		for (int index = table.length() - 1; index >= 0; --index) {
+			table.lazySet(index, null);
+		}
+	}
+
+	// region: Private
+
+	private String intern(CharSequence s, int start, int end, String given) {
+		final int length = end - start;
+		if (length > maxLength) {
+			return given != null ? given : s.subSequence(start, end).toString();
+		}
+
+		int hash = 0;
+		if (given != null) {
+			hash = given.hashCode();
+		}
+		else {
+			for (int index = start; index < end; ++index) {
+				hash = 31 * hash + s.charAt(index);
+			}
+		}
+
+		final int slot = spread(hash) & mask;
+		String candidate = table.get(slot);
+		if (candidate != null && candidate.hashCode() == hash && contentEquals(candidate, s, start, length)) {
+			return candidate;
+		}
+		String other = table.get(slot + 1);
+		if (other != null && other.hashCode() == hash && contentEquals(other, s, start, length)) {
+			promote(slot, candidate, other);
+			return other;
+		}
+
+		String result = given != null ? given : s.subSequence(start, end).toString();
+		put(slot, candidate, result);
+		return result;
+	}
+
+	// Move hit entry to front of bucket
+	private void promote(int slot, String front, String hit) {
+		table.lazySet(slot, hit);
+		table.lazySet(slot + 1, front);
+	}
+
+	// Put new entry to front of bucket, old front is moved to back (old back is evicted)
+	private void put(int slot, String front, String entry) {
+		if (front != null) {
+			table.lazySet(slot + 1, front);
+		}
+		table.lazySet(slot, entry);
+	}
+
+	private static int spread(int hash) {
+		hash ^= hash >>> 16;
+		return (hash ^ (hash >>> 7)) << 1;
+	}
+
+	private static boolean contentEquals(String s, char[] chars, int start, int length) {
+		if (s.length() != length) {
+			return false;
+		}
+		for (int index = 0; index < length; ++index) {
+			if (s.charAt(index) != chars[start + index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean contentEquals(String s, CharSequence chars, int start, int length) {
+		if (s.length() != length) {
+			return false;
+		}
+		for (int index = 0; index < length; ++index) {
+			if (s.charAt(index) != chars.charAt(start + index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// endregion: Private
+}
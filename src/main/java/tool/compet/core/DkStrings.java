@@ -4,8 +4,10 @@
 
 package tool.compet.core;
 
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.Locale;
+import java.util.List;
+import java.util.ListIterator;
 
 import android.content.Context;
 
@@ -25,56 +27,7 @@ public class DkStrings {
 		if (msg == null || msg.length() == 0) {
 			return msg;
 		}
-
-		boolean fromLeft = true;
-		boolean fromRight = true;
-		final boolean shouldCheckTargets = (delimiters != null);
-		final int N = msg.length();
-		int startIndex = 0, endIndex = N - 1;
-
-		while (startIndex <= endIndex && (fromLeft || fromRight)) {
-			// Check from left to right
-			if (fromLeft) {
-				char current = msg.charAt(startIndex);
-				boolean stopCheck = true;
-
-				// Check whether character insides targets
-				if (shouldCheckTargets && DkArrays.inArray(current, delimiters)) {
-					stopCheck = false;
-					++startIndex;
-				}
-				// Stop checking whitespace since found this character in targets
-				if (stopCheck) {
-					fromLeft = false;
-				}
-				// Check whether the character is whitespace
-				else if (Character.isWhitespace((int) current)) {
-					++startIndex;
-				}
-			}
-
-			// Check from right to left
-			if (fromRight) {
-				char current = msg.charAt(endIndex);
-				boolean stopCheck = true;
-
-				// Check whether the character insides targets
-				if (shouldCheckTargets && DkArrays.inArray(current, delimiters)) {
-					stopCheck = false;
-					--endIndex;
-				}
-				// Stop checking whitespace since found this character in targets
-				if (stopCheck) {
-					fromRight = false;
-				}
-				// Check whether the character is whitespace
-				else if (Character.isWhitespace((int) current)) {
-					--endIndex;
-				}
-			}
-		}
-
-		return (endIndex < startIndex) ? "" : msg.substring(startIndex, endIndex + 1);
+		return trim(msg, DkCharMatcher.whitespaceOr(delimiters));
 	}
 
 	/**
@@ -85,65 +38,95 @@ public class DkStrings {
 		if (msg == null || msg.length() == 0 || delimiters == null || delimiters.length == 0) {
 			return msg;
 		}
+		return trim(msg, DkCharMatcher.of(delimiters));
+	}
 
-		boolean fromLeft = true;
-		boolean fromRight = true;
+	/**
+	 * Remove from given `msg` start-leading and end-leading characters which match given `matcher`.
+	 * Build matcher once and reuse it for hot path, for eg,. `DkCharMatcher.whitespaceOr(',', ';')`.
+	 *
+	 * @return Given `msg` itself when nothing was trimmed.
+	 */
+	public static String trim(String msg, DkCharMatcher matcher) {
+		if (msg == null) {
+			return null;
+		}
 		final int N = msg.length();
-		int startIndex = 0, endIndex = N - 1;
-
-		while (startIndex <= endIndex && (fromLeft || fromRight)) {
-			// check from left to right
-			if (fromLeft) {
-				char current = msg.charAt(startIndex);
-				boolean stopCheck = true;
-				// check whether current insides targets
-				if (DkArrays.inArray(current, delimiters)) {
-					stopCheck = false;
-					++startIndex;
-				}
-				if (stopCheck) {
-					fromLeft = false;
-				}
-			}
-			// check from right to left
-			if (fromRight) {
-				char current = msg.charAt(endIndex);
-				boolean stopCheck = true;
-				// check whether current insides targets
-				if (DkArrays.inArray(current, delimiters)) {
-					stopCheck = false;
-					--endIndex;
-				}
-				if (stopCheck) {
-					fromRight = false;
-				}
-			}
+		final int startIndex = matcher.skipForward(msg, 0, N);
+		final int endIndex = matcher.skipBackward(msg, startIndex, N);
+
+		return (startIndex == 0 && endIndex == N) ? msg : msg.substring(startIndex, endIndex);
+	}
+
+	/**
+	 * Same as `trim(String, DkCharMatcher)` for CharSequence (StringBuilder, CharBuffer...).
+	 *
+	 * @return Given `msg` itself when nothing was trimmed, otherwise sub-sequence of it.
+	 */
+	public static CharSequence trim(CharSequence msg, DkCharMatcher matcher) {
+		if (msg == null) {
+			return null;
+		}
+		final int N = msg.length();
+		final int startIndex = matcher.skipForward(msg, 0, N);
+		final int endIndex = matcher.skipBackward(msg, startIndex, N);
+
+		return (startIndex == 0 && endIndex == N) ? msg : msg.subSequence(startIndex, endIndex);
+	}
+
+	/**
+	 * Trim each item of given array in-place.
+	 */
+	public static void trimAll(String[] items, DkCharMatcher matcher) {
+		for (int index = items.length - 1; index >= 0; --index) {
+			items[index] = trim(items[index], matcher);
 		}
+	}
 
-		return (endIndex < startIndex) ? "" : msg.substring(startIndex, endIndex + 1);
+	/**
+	 * Trim each item of given list in-place, only changed items are set back.
+	 */
+	public static void trimAll(List<String> items, DkCharMatcher matcher) {
+		ListIterator<String> it = items.listIterator();
+		while (it.hasNext()) {
+			String item = it.next();
+			String trimmed = trim(item, matcher);
+			if (trimmed != item) {
+				it.set(trimmed);
+			}
+		}
 	}
 
 	public static boolean isEquals(CharSequence a, CharSequence b) {
 		return a == b || (a != null && a.equals(b));
 	}
 
+	/**
+	 * Compile given keywords once, then find all of them in one pass over text,
+	 * instead of calling `indexOf()` for each keyword.
+	 */
+	public static DkKeywordMatcher compileKeywords(String... keywords) {
+		return new DkKeywordMatcher(keywords);
+	}
+
+	// Joins below precompute exact length of result, so builder does not grow
+
 	public static String join(char delimiter, String... items) {
-		StringBuilder sb = new StringBuilder();
-		boolean first = true;
-		for (String item : items) {
-			if (first) {
-				first = false;
-			}
-			else {
-				sb.append(delimiter);
-			}
-			sb.append(item);
+		final int N = items.length;
+		if (N == 0) {
+			return "";
+		}
+		final StringBuilder sb = new StringBuilder(N - 1 + totalLength(items));
+		sb.append(items[0]);
+		for (int index = 1; index < N; ++index) {
+			sb.append(delimiter).append(items[index]);
 		}
 		return sb.toString();
 	}
 
 	public static String join(char delimiter, Iterable<String> items) {
-		StringBuilder sb = new StringBuilder();
+		final int count = countOf(items);
+		final StringBuilder sb = new StringBuilder(count < 0 ? 16 : Math.max(0, count - 1) + totalLength(items));
 		Iterator<String> it = items.iterator();
 
 		if (it.hasNext()) {
@@ -158,7 +141,8 @@ public class DkStrings {
 	}
 
 	public static String join(CharSequence delimiter, Iterable<String> items) {
-		StringBuilder sb = new StringBuilder();
+		final int count = countOf(items);
+		final StringBuilder sb = new StringBuilder(count < 0 ? 16 : Math.max(0, count - 1) * delimiter.length() + totalLength(items));
 		Iterator<String> it = items.iterator();
 
 		if (it.hasNext()) {
@@ -173,23 +157,85 @@ public class DkStrings {
 	}
 
 	public static String join(CharSequence delimiter, String... items) {
-		StringBuilder sb = new StringBuilder();
-		boolean first = true;
+		final int N = items.length;
+		if (N == 0) {
+			return "";
+		}
+		final StringBuilder sb = new StringBuilder((N - 1) * delimiter.length() + totalLength(items));
+		sb.append(items[0]);
+		for (int index = 1; index < N; ++index) {
+			sb.append(delimiter).append(items[index]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Join elements of given list, digits are written directly without boxing.
+	 */
+	public static String join(CharSequence delimiter, DkIntArrayList items) {
+		return joinInts(delimiter, items.getCurrentArray(), items.size());
+	}
+
+	/**
+	 * Join elements of given list, digits are written directly without boxing.
+	 */
+	public static String join(CharSequence delimiter, DkLongArrayList items) {
+		return MyDigits.join(items.getCurrentArray(), items.size(), "", delimiter.toString(), "");
+	}
+
+	/**
+	 * Join keys of given map (DkIntObjectArrayMap, DkIntIntArrayMap...) in ascending order.
+	 */
+	public static String joinKeys(CharSequence delimiter, TheBaseSparseArray map) {
+		return joinInts(delimiter, map.keys, map.size());
+	}
+
+	/**
+	 * Join values of given map in ascending order of keys.
+	 */
+	public static String joinValues(CharSequence delimiter, DkIntObjectArrayMap<?> map) {
+		final int N = map.size();
+		final String[] items = new String[N];
+		for (int index = 0; index < N; ++index) {
+			items[index] = String.valueOf(map.valueAt(index));
+		}
+		return join(delimiter, items);
+	}
+
+	private static String joinInts(CharSequence delimiter, int[] arr, int N) {
+		return MyDigits.join(arr, N, "", delimiter.toString(), "");
+	}
 
+	private static int totalLength(String[] items) {
+		int length = 0;
 		for (String item : items) {
-			if (first) {
-				first = false;
-			}
-			else {
-				sb.append(delimiter);
-			}
-			sb.append(item);
+			length += (item == null) ? 4 : item.length();
 		}
+		return length;
+	}
 
-		return sb.toString();
+	private static int totalLength(Iterable<String> items) {
+		int length = 0;
+		for (String item : items) {
+			length += (item == null) ? 4 : item.length();
+		}
+		return length;
 	}
 
+	/**
+	 * Items are only iterated twice (to compute length) when it is a collection,
+	 * since other iterable may not be iterated again.
+	 *
+	 * @return Size of given items if it is a collection, otherwise -1.
+	 */
+	private static int countOf(Iterable<String> items) {
+		return (items instanceof Collection) ? ((Collection<String>) items).size() : -1;
+	}
+
+	/**
+	 * Same as `String.format(Locale.US, format, args)`, but faster for common specifiers (%s, %d, %x, %f...).
+	 */
 	public static String format(String format, Object... args) {
-		return format == null || (args == null || args.length == 0) ? format : String.format(Locale.US, format, args);
+		return format == null || (args == null || args.length == 0) ? format : MyFormatter.format(format, args);
 	}
 }
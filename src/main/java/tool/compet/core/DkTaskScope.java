@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scope which binds lifetime of forked tasks to a block of code. Tasks are run on the
+ * shared pool of {@link DkExecutorService}. When some task failed, all sibling tasks are cancelled,
+ * and closing the scope also cancels all unfinished tasks. Usage:
+ *
+ * <pre>
+ * try (DkTaskScope scope = new DkTaskScope()) {
+ *    Future&lt;User&gt; user = scope.fork(() -> loadUser());
+ *    Future&lt;Order&gt; order = scope.fork(() -> loadOrder());
+ *    scope.join();
+ *    render(user.get(), order.get());
+ * }
+ * </pre>
+ */
+public class DkTaskScope implements AutoCloseable {
+	private final List<Future<?>> futures = new ArrayList<>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private boolean cancelled;
+
+	/**
+	 * Start given task on the pool.
+	 *
+	 * @throws IllegalStateException When this scope was cancelled or closed.
+	 */
+	@NonNull
+	public <R> Future<R> fork(@NonNull DkCallable<R> task) {
+		synchronized (futures) {
+			if (cancelled) {
+				throw new IllegalStateException("Scope was cancelled");
+			}
+			ScopedTask<R> future = new ScopedTask<>(task);
+			DkExecutorService.getExecutor().execute(future);
+			futures.add(future);
+			return future;
+		}
+	}
+
+	/**
+	 * Wait until all forked tasks completed.
+	 *
+	 * @throws Exception First exception which was thrown from some task.
+	 */
+	public void join() throws Exception {
+		join(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Wait until all forked tasks completed before deadline.
+	 *
+	 * @throws TimeoutException When deadline passed. Unfinished tasks are cancelled at that time.
+	 * @throws Exception First exception which was thrown from some task.
+	 */
+	public void join(long timeout, TimeUnit unit) throws Exception {
+		final long deadline = DkParallels.calcDeadline(timeout, unit);
+
+		for (Future<?> future : snapshot()) {
+			try {
+				future.get(DkParallels.remainNanos(deadline), TimeUnit.NANOSECONDS);
+			}
+			catch (ExecutionException | CancellationException ignore) {
+				// Failure is reported below
+				break;
+			}
+			catch (TimeoutException | InterruptedException e) {
+				cancel();
+				throw e;
+			}
+		}
+
+		Throwable e = failure.get();
+		if (e instanceof Exception) {
+			throw (Exception) e;
+		}
+		if (e != null) {
+			throw DkParallels.asRuntimeException(e);
+		}
+		if (isCancelled()) {
+			throw new CancellationException("Scope was cancelled");
+		}
+	}
+
+	/**
+	 * Cancel (interrupt) all unfinished tasks, and reject new tasks.
+	 */
+	public void cancel() {
+		for (Future<?> future : markCancelledAndSnapshot()) {
+			future.cancel(true);
+		}
+	}
+
+	public boolean isCancelled() {
+		synchronized (futures) {
+			return cancelled;
+		}
+	}
+
+	@Override
+	public void close() {
+		cancel();
+	}
+
+	private List<Future<?>> snapshot() {
+		synchronized (futures) {
+			return new ArrayList<>(futures);
+		}
+	}
+
+	private List<Future<?>> markCancelledAndSnapshot() {
+		synchronized (futures) {
+			cancelled = true;
+			return new ArrayList<>(futures);
+		}
+	}
+
+	/**
+	 * Task which cancels its siblings when it failed (any Throwable).
+	 */
+	private class ScopedTask<R> extends FutureTask<R> {
+		ScopedTask(DkCallable<R> task) {
+			super(task::call);
+		}
+
+		@Override
+		protected void setException(Throwable e) {
+			// Complete this task first, so cancelling the scope does not turn its failure into cancellation
+			super.setException(e);
+
+			// Only the first failure is reported, others are mostly caused by cancellation
+			if (failure.compareAndSet(null, e)) {
+				DkTaskScope.this.cancel();
+			}
+		}
+	}
+}
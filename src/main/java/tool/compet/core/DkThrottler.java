@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs action at most once per window with the last argument.
+ * First call of a quiet period is run immediately (on scheduler thread), and calls within
+ * the window are collapsed into one trailing execution at end of the window.
+ * For eg,. refresh network data at most once per second.
+ */
+public class DkThrottler<T> extends TheBaseCallLimiter<T> {
+	private volatile long lastRunNanos;
+
+	public DkThrottler(long window, TimeUnit unit, @NonNull DkRunner1<T> action) {
+		this(window, unit, action, DkExecutorService.getExecutor());
+	}
+
+	public DkThrottler(long window, TimeUnit unit, @NonNull DkRunner1<T> action, @NonNull ScheduledExecutorService scheduler) {
+		this(window, unit, action, scheduler, DkClock.SYSTEM);
+	}
+
+	public DkThrottler(long window, TimeUnit unit, @NonNull DkRunner1<T> action,
+		@NonNull ScheduledExecutorService scheduler, @NonNull DkClock clock) {
+
+		super(window, unit, action, scheduler, clock);
+		this.lastRunNanos = clock.nowNanos() - windowNanos;
+	}
+
+	/**
+	 * Replace pending argument with given `arg`, and schedule it at next allowed time.
+	 */
+	public void call(T arg) {
+		pending.set(arg);
+
+		if (scheduled.compareAndSet(false, true)) {
+			schedule(Math.max(0, lastRunNanos + windowNanos - clock.nowNanos()));
+		}
+	}
+
+	@Override
+	protected void onFire() {
+		scheduled.set(false);
+
+		long now = clock.nowNanos();
+		if (runPending()) {
+			lastRunNanos = now;
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lightweight tracing: named spans per thread, measured with `System.nanoTime()`.
+ * Spans are nested (a span begun inside other span is its child), each thread has its own span stack.
+ *
+ * Ended spans are aggregated into per-name statistics (count, min, avg, p99, max), and
+ * optionally recorded as events which can be exported as Chrome trace-event JSON
+ * (open with chrome://tracing or https://ui.perfetto.dev).
+ *
+ * When disabled, `begin()` and `end()` only read a volatile flag, so they can be left in release code.
+ * Usage:
+ * <pre>
+ * DkTraces.begin("loadUser");
+ * try { ... } finally { DkTraces.end(); }
+ * </pre>
+ */
+public class DkTraces {
+	// Turn on/off tracing, should not be changed while some span is opened
+	public static volatile boolean enabled;
+
+	// Record each span as event for exporting trace file, statistics are always collected when enabled
+	public static volatile boolean recordEvents;
+
+	// Max number of events per thread, later events are dropped
+	public static int maxEventsPerThread = 100_000;
+
+	// Origin of exported timestamps
+	private static final long BASE_NANOS = System.nanoTime();
+
+	private static final ConcurrentHashMap<String, Stats> statsByName = new ConcurrentHashMap<>();
+
+	// Stacks which have recorded events, a stack is added at its first event (only when enabled),
+	// and removed after its thread died and its events were exported (or reset)
+	private static final CopyOnWriteArrayList<SpanStack> allStacks = new CopyOnWriteArrayList<>();
+	private static final ThreadLocal<SpanStack> threadStack = new ThreadLocal<SpanStack>() {
+		@Override
+		protected SpanStack initialValue() {
+			return new SpanStack(Thread.currentThread());
+		}
+	};
+
+	/**
+	 * Open a span with given name as child of current span of this thread.
+	 */
+	public static void begin(@NonNull String name) {
+		if (enabled) {
+			threadStack.get().push(name);
+		}
+	}
+
+	/**
+	 * Close current span of this thread.
+	 *
+	 * @return Duration of the span in nanoseconds, or -1 if disabled.
+	 */
+	public static long end() {
+		return enabled ? threadStack.get().pop() : -1;
+	}
+
+	/**
+	 * @return Statistics of all span names, sorted by total time descending.
+	 */
+	@NonNull
+	public static List<Stats> stats() {
+		pruneDeadStacks();
+
+		List<Stats> result = new ArrayList<>(statsByName.values());
+		Collections.sort(result, (a, b) -> Long.compare(b.totalNanos(), a.totalNanos()));
+		return result;
+	}
+
+	/**
+	 * @return Statistics as text table, each line is a span name.
+	 */
+	@NonNull
+	public static String dumpStats() {
+		StringBuilder sb = new StringBuilder(256);
+		sb.append("name | count | min | avg | p99 | max (ms)");
+		for (Stats stats : stats()) {
+			sb.append('\n').append(stats);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Clear all statistics and recorded events.
+	 */
+	public static void reset() {
+		statsByName.clear();
+		for (SpanStack stack : allStacks) {
+			stack.clearEvents();
+		}
+		pruneDeadStacks();
+	}
+
+	/**
+	 * Write recorded events as Chrome trace-event JSON.
+	 */
+	public static void exportChromeTrace(@NonNull File file) throws Exception {
+		try (Writer out = DkFiles.newUtf8Writer(file)) {
+			exportChromeTrace(out);
+		}
+	}
+
+	public static void exportChromeTrace(@NonNull Writer out) throws IOException {
+		out.write("{\"traceEvents\":[");
+		boolean first = true;
+
+		for (SpanStack stack : allStacks) {
+			first = stack.writeEvents(out, first);
+
+			// Events of dead thread will not change anymore, so drop them after exported
+			if (! stack.isAlive()) {
+				stack.clearEvents();
+			}
+		}
+
+		out.write("],\"displayTimeUnit\":\"ms\"}");
+		out.flush();
+		pruneDeadStacks();
+	}
+
+	// region: Package
+
+	/**
+	 * Span stack of current thread, it works regardless of `enabled` (used by tick/tock).
+	 */
+	static SpanStack stack() {
+		return threadStack.get();
+	}
+
+	static void record(String name, long durationNanos) {
+		Stats stats = statsByName.get(name);
+		if (stats == null) {
+			Stats newStats = new Stats(name);
+			stats = statsByName.putIfAbsent(name, newStats);
+			if (stats == null) {
+				stats = newStats;
+			}
+		}
+		stats.add(durationNanos);
+	}
+
+	// endregion: Package
+
+	// region: Private
+
+	/**
+	 * Remove stacks of dead threads which have no event to export.
+	 */
+	private static void pruneDeadStacks() {
+		for (SpanStack stack : allStacks) {
+			if (! stack.isAlive() && stack.isEmpty()) {
+				allStacks.remove(stack);
+			}
+		}
+	}
+
+	// endregion: Private
+
+	static class SpanStack {
+		// Weak reference, so stack does not keep finished thread (and its context) alive
+		private final WeakReference<Thread> thread;
+		private final long threadId;
+		private final String threadName;
+
+		// TRUE while this is in `allStacks`
+		private boolean registered;
+
+		// Opened spans
+		private String[] names = new String[16];
+		private long[] starts = new long[16];
+		private int depth;
+
+		// Name of the span which was closed lastly
+		String lastName;
+
+		// Recorded events, guarded by `this` since exporter reads them from other thread
+		private String[] eventNames = DkEmptyArray.STRING;
+		private long[] eventStarts = DkEmptyArray.LONG;
+		private long[] eventDurations = DkEmptyArray.LONG;
+		private int eventCount;
+
+		SpanStack(Thread thread) {
+			this.thread = new WeakReference<>(thread);
+			this.threadId = thread.getId();
+			this.threadName = thread.getName();
+		}
+
+		void push(String name) {
+			if (depth == names.length) {
+				names = Arrays.copyOf(names, depth << 1);
+				starts = Arrays.copyOf(starts, depth << 1);
+			}
+			names[depth] = name;
+			starts[depth++] = System.nanoTime();
+		}
+
+		/**
+		 * @return Duration of closed span in nanoseconds, or -1 if no span is opened.
+		 */
+		long pop() {
+			final long now = System.nanoTime();
+			if (depth == 0) {
+				return -1;
+			}
+
+			final String name = lastName = names[--depth];
+			final long start = starts[depth];
+			final long duration = now - start;
+			names[depth] = null;
+
+			if (enabled) {
+				record(name, duration);
+
+				if (recordEvents) {
+					addEvent(name, start, duration);
+				}
+			}
+			return duration;
+		}
+
+		boolean isAlive() {
+			Thread thread = this.thread.get();
+			return thread != null && thread.isAlive();
+		}
+
+		synchronized boolean isEmpty() {
+			return eventCount == 0;
+		}
+
+		private synchronized void addEvent(String name, long start, long duration) {
+			final int count = eventCount;
+			if (count >= maxEventsPerThread) {
+				return;
+			}
+			if (! registered) {
+				registered = true;
+				allStacks.add(this);
+			}
+			if (count == eventNames.length) {
+				int capacity = Math.max(64, count << 1);
+				eventNames = Arrays.copyOf(eventNames, capacity);
+				eventStarts = Arrays.copyOf(eventStarts, capacity);
+				eventDurations = Arrays.copyOf(eventDurations, capacity);
+			}
+			eventNames[count] = name;
+			eventStarts[count] = start;
+			eventDurations[count] = duration;
+			eventCount = count + 1;
+		}
+
+		synchronized void clearEvents() {
+			Arrays.fill(eventNames, 0, eventCount, null);
+			eventCount = 0;
+		}
+
+		synchronized boolean writeEvents(Writer out, boolean first) throws IOException {
+			StringBuilder sb = new StringBuilder(128);
+
+			// Thread name as metadata event
+			if (eventCount > 0) {
+				sb.append(first ? "" : ",").append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(threadId)
+					.append(",\"args\":{\"name\":");
+				DkLogEvent.appendJsonString(sb, threadName);
+				sb.append("}}");
+				out.append(sb);
+				first = false;
+			}
+
+			for (int index = 0; index < eventCount; ++index) {
+				sb.setLength(0);
+				sb.append(",{\"name\":");
+				DkLogEvent.appendJsonString(sb, eventNames[index]);
+				sb.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(threadId).append(",\"ts\":");
+				appendMicros(sb, eventStarts[index] - BASE_NANOS);
+				sb.append(",\"dur\":");
+				appendMicros(sb, eventDurations[index]);
+				sb.append('}');
+				out.append(sb);
+			}
+			return first;
+		}
+
+		// Trace-event timestamps are in microseconds, write them as plain decimal (no exponent)
+		private static void appendMicros(StringBuilder sb, long nanos) {
+			if (nanos < 0) {
+				sb.append('-');
+				nanos = -nanos;
+			}
+			long fraction = nanos % 1000;
+			sb.append(nanos / 1000).append('.');
+			if (fraction < 100) {
+				sb.append(fraction < 10 ? "00" : "0");
+			}
+			sb.append(fraction);
+		}
+	}
+
+	/**
+	 * Lock-free statistics of a span name. Percentile is estimated from a log-linear histogram
+	 * (8 sub-buckets per power of 2), so error is at most 12.5%.
+	 */
+	public static class Stats {
+		private static final int SUB_BUCKET_BITS = 3;
+		private static final int LINEAR_LIMIT = 1 << (SUB_BUCKET_BITS + 1);
+		private static final int BUCKET_COUNT = LINEAR_LIMIT + (64 - SUB_BUCKET_BITS - 1) * (1 << SUB_BUCKET_BITS);
+
+		public final String name;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+		Stats(String name) {
+			this.name = name;
+		}
+
+		void add(long nanos) {
+			nanos = Math.max(0, nanos);
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+			histogram.incrementAndGet(bucketOf(nanos));
+
+			long current;
+			while (nanos < (current = min.get()) && ! min.compareAndSet(current, nanos)) {
+			}
+			while (nanos > (current = max.get()) && ! max.compareAndSet(current, nanos)) {
+			}
+		}
+
+		public long count() {
+			return count.get();
+		}
+
+		public long totalNanos() {
+			return total.get();
+		}
+
+		public long minNanos() {
+			long value = min.get();
+			return value == Long.MAX_VALUE ? 0 : value;
+		}
+
+		public long maxNanos() {
+			return max.get();
+		}
+
+		public long avgNanos() {
+			long count = this.count.get();
+			return count == 0 ? 0 : total.get() / count;
+		}
+
+		/**
+		 * @param percentile In range (0, 100], for eg,. 99.
+		 * @return Upper bound of the bucket which contains given percentile.
+		 */
+		public long percentileNanos(double percentile) {
+			final long count = this.count.get();
+			final long rank = (long) Math.ceil(count * percentile / 100);
+			long seen = 0;
+
+			for (int index = 0; index < BUCKET_COUNT; ++index) {
+				seen += histogram.get(index);
+				if (seen >= rank && seen > 0) {
+					return Math.min(upperBoundOf(index), maxNanos());
+				}
+			}
+			return maxNanos();
+		}
+
+		@NonNull
+		@Override
+		public String toString() {
+			return DkStrings.format("%s | %d | %.3f | %.3f | %.3f | %.3f", name, count(),
+				minNanos() / 1e6, avgNanos() / 1e6, percentileNanos(99) / 1e6, maxNanos() / 1e6);
+		}
+
+		private static int bucketOf(long value) {
+			if (value < LINEAR_LIMIT) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+			return LINEAR_LIMIT + ((exponent - SUB_BUCKET_BITS - 1) << SUB_BUCKET_BITS) + subBucket;
+		}
+
+		private static long upperBoundOf(int bucket) {
+			if (bucket < LINEAR_LIMIT) {
+				return bucket;
+			}
+			bucket -= LINEAR_LIMIT;
+			int exponent = (bucket >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS + 1;
+			long subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+			long lowerBound = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+			return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+		}
+	}
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Encodes and decodes UTF-8 directly between chars and bytes (array, ByteBuffer, DkByteArrayList),
+ * so caller can reuse its buffers instead of making new array or reader for each text.
+ *
+ * ASCII text (most of files, logs, json...) takes fast path: a run of ASCII chars is copied
+ * byte by byte without any branch on multi-byte form, and `isAscii()` checks 8 bytes per step.
+ * Encoded output is same as `String.getBytes(UTF_8)` (lone surrogate is encoded as '?'),
+ * decoded output of valid bytes is same as `new String(bytes, UTF_8)`. Malformed bytes are decoded
+ * as U+FFFD, one per maximal invalid subpart as Unicode recommends (platform decoders differ in count).
+ *
+ * Note: to make new array or String, use `String.getBytes(UTF_8)` and `new String(bytes, UTF_8)`,
+ * they are intrinsic on most VMs and much faster than this for ASCII text.
+ */
+public class DkUtf8 {
+	public static final char REPLACEMENT_CHAR = '\uFFFD';
+
+	private static final int CHUNK_SIZE = 1024;
+
+	// Chunks to copy chars out of CharSequence and to encode into non-array ByteBuffer
+	private static final ThreadLocal<Chunks> threadChunks = new ThreadLocal<Chunks>() {
+		@Override
+		protected Chunks initialValue() {
+			return new Chunks();
+		}
+	};
+
+	/**
+	 * @return TRUE if all bytes in range [start, end) are ASCII (so each byte is one char).
+	 */
+	public static boolean isAscii(@NonNull byte[] bytes, int start, int end) {
+		int index = start;
+
+		// OR of 8 bytes is negative iff some byte has high bit
+		for (final int stop = end - 7; index < stop; index += 8) {
+			if ((bytes[index] | bytes[index + 1] | bytes[index + 2] | bytes[index + 3]
+				| bytes[index + 4] | bytes[index + 5] | bytes[index + 6] | bytes[index + 7]) < 0) {
+				return false;
+			}
+		}
+		for (; index < end; ++index) {
+			if (bytes[index] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static boolean isAscii(@NonNull CharSequence s, int start, int end) {
+		int bits = 0;
+		for (int index = start; index < end; ++index) {
+			bits |= s.charAt(index);
+		}
+		return bits < 0x80;
+	}
+
+	/**
+	 * @return Number of bytes of chars in range [start, end) when encoded.
+	 */
+	public static int encodedLength(@NonNull CharSequence s, int start, int end) {
+		int length = end - start;
+		for (int index = start; index < end; ++index) {
+			char ch = s.charAt(index);
+			if (ch >= 0x80) {
+				if (ch < 0x800) {
+					length += 1;
+				}
+				else if (Character.isHighSurrogate(ch) && index + 1 < end && Character.isLowSurrogate(s.charAt(index + 1))) {
+					// 4 bytes for 2 chars
+					length += 2;
+					++index;
+				}
+				else if (! Character.isSurrogate(ch)) {
+					length += 2;
+				}
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Encode chars in range [start, end) into `out` at `offset`. Caller must ensure enough space,
+	 * at most `3 * (end - start)` bytes, or exactly `encodedLength()` bytes.
+	 *
+	 * @return Offset after last written byte.
+	 */
+	public static int encode(@NonNull CharSequence s, int start, int end, @NonNull byte[] out, int offset) {
+		// Copy chunk of chars then encode from array, faster than `charAt()` on each char
+		final char[] chunk = threadChunks.get().chars;
+		int pos = offset;
+
+		for (int chunkStart = start; chunkStart < end; ) {
+			int chunkEnd = Math.min(end, chunkStart + CHUNK_SIZE);
+			// Keep surrogate pair in same chunk
+			if (chunkEnd < end && Character.isHighSurrogate(s.charAt(chunkEnd - 1))) {
+				--chunkEnd;
+			}
+			if (s instanceof String) {
+				((String) s).getChars(chunkStart, chunkEnd, chunk, 0);
+			}
+			else {
+				for (int index = chunkStart; index < chunkEnd; ++index) {
+					chunk[index - chunkStart] = s.charAt(index);
+				}
+			}
+			pos = encode(chunk, 0, chunkEnd - chunkStart, out, pos);
+			chunkStart = chunkEnd;
+		}
+		return pos;
+	}
+
+	/**
+	 * Encode chars in range [start, end) of given array, same as `encode(CharSequence...)`.
+	 */
+	public static int encode(@NonNull char[] chars, int start, int end, @NonNull byte[] out, int offset) {
+		int pos = offset;
+		int index = start;
+
+		// ASCII run
+		for (char ch; index < end && (ch = chars[index]) < 0x80; ++index) {
+			out[pos++] = (byte) ch;
+		}
+
+		for (; index < end; ++index) {
+			final char ch = chars[index];
+
+			if (ch < 0x80) {
+				out[pos++] = (byte) ch;
+			}
+			else if (ch < 0x800) {
+				out[pos++] = (byte) (0xC0 | (ch >> 6));
+				out[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+			else if (! Character.isSurrogate(ch)) {
+				out[pos++] = (byte) (0xE0 | (ch >> 12));
+				out[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+			else if (Character.isHighSurrogate(ch) && index + 1 < end && Character.isLowSurrogate(chars[index + 1])) {
+				final int cp = Character.toCodePoint(ch, chars[++index]);
+				out[pos++] = (byte) (0xF0 | (cp >> 18));
+				out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (cp & 0x3F));
+			}
+			else {
+				// Lone surrogate
+				out[pos++] = '?';
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Append encoded chars in range [start, end) to given list.
+	 */
+	public static void encode(@NonNull CharSequence s, int start, int end, @NonNull DkByteArrayList out) {
+		final int size = out.size;
+		int maxLength = 3 * (end - start);
+		if (out.getCurrentArray().length - size < maxLength) {
+			// Avoid reserving 3 times of text (mostly ASCII) when list must grow anyway
+			maxLength = encodedLength(s, start, end);
+		}
+		out.ensureCapacity(size + maxLength);
+		out.size = encode(s, start, end, out.getCurrentArray(), size);
+	}
+
+	/**
+	 * Put encoded chars in range [start, end) to given buffer.
+	 *
+	 * @throws BufferOverflowException When remaining of buffer is not enough (nothing is written).
+	 */
+	public static void encode(@NonNull CharSequence s, int start, int end, @NonNull ByteBuffer out) {
+		final int remaining = out.remaining();
+		if (remaining < 3 * (end - start) && remaining < encodedLength(s, start, end)) {
+			throw new BufferOverflowException();
+		}
+
+		if (out.hasArray()) {
+			final int offset = out.arrayOffset();
+			final int pos = encode(s, start, end, out.array(), offset + out.position());
+			out.position(pos - offset);
+			return;
+		}
+
+		final byte[] chunk = threadChunks.get().bytes;
+		for (int chunkStart = start; chunkStart < end; ) {
+			int chunkEnd = Math.min(end, chunkStart + CHUNK_SIZE);
+			// Keep surrogate pair in same chunk
+			if (chunkEnd < end && Character.isHighSurrogate(s.charAt(chunkEnd - 1))) {
+				--chunkEnd;
+			}
+			out.put(chunk, 0, encode(s, chunkStart, chunkEnd, chunk, 0));
+			chunkStart = chunkEnd;
+		}
+	}
+
+	/**
+	 * Decode bytes in range [start, end) into `out` at `offset`. Caller must ensure enough space,
+	 * at most `end - start` chars.
+	 *
+	 * @return Offset after last written char.
+	 */
+	public static int decode(@NonNull byte[] bytes, int start, int end, @NonNull char[] out, int offset) {
+		int pos = offset;
+		int index = start;
+
+		// ASCII run
+		for (byte b; index < end && (b = bytes[index]) >= 0; ++index) {
+			out[pos++] = (char) b;
+		}
+
+		while (index < end) {
+			final int b0 = bytes[index];
+
+			if (b0 >= 0) {
+				out[pos++] = (char) b0;
+				++index;
+			}
+			else if (b0 < (byte) 0xC2) {
+				// Continuation byte or overlong 2-byte lead
+				out[pos++] = REPLACEMENT_CHAR;
+				++index;
+			}
+			else if (b0 < (byte) 0xE0) {
+				if (index + 1 < end && isContinuation(bytes[index + 1])) {
+					out[pos++] = (char) (((b0 & 0x1F) << 6) | (bytes[index + 1] & 0x3F));
+					index += 2;
+				}
+				else {
+					out[pos++] = REPLACEMENT_CHAR;
+					++index;
+				}
+			}
+			else if (b0 < (byte) 0xF0) {
+				// Exclude overlong (E0 80..9F) and surrogate (ED A0..BF)
+				final int low = b0 == (byte) 0xE0 ? 0xA0 : 0x80;
+				final int high = b0 == (byte) 0xED ? 0x9F : 0xBF;
+
+				if (index + 1 >= end || ! inRange(bytes[index + 1], low, high)) {
+					out[pos++] = REPLACEMENT_CHAR;
+					++index;
+				}
+				else if (index + 2 >= end || ! isContinuation(bytes[index + 2])) {
+					out[pos++] = REPLACEMENT_CHAR;
+					index += 2;
+				}
+				else {
+					out[pos++] = (char) (((b0 & 0x0F) << 12) | ((bytes[index + 1] & 0x3F) << 6) | (bytes[index + 2] & 0x3F));
+					index += 3;
+				}
+			}
+			else if (b0 < (byte) 0xF5) {
+				// Exclude overlong (F0 80..8F) and too large (F4 90..BF)
+				final int low = b0 == (byte) 0xF0 ? 0x90 : 0x80;
+				final int high = b0 == (byte) 0xF4 ? 0x8F : 0xBF;
+
+				if (index + 1 >= end || ! inRange(bytes[index + 1], low, high)) {
+					out[pos++] = REPLACEMENT_CHAR;
+					++index;
+				}
+				else if (index + 2 >= end || ! isContinuation(bytes[index + 2])) {
+					out[pos++] = REPLACEMENT_CHAR;
+					index += 2;
+				}
+				else if (index + 3 >= end || ! isContinuation(bytes[index + 3])) {
+					out[pos++] = REPLACEMENT_CHAR;
+					index += 3;
+				}
+				else {
+					final int cp = ((b0 & 0x07) << 18) | ((bytes[index + 1] & 0x3F) << 12)
+						| ((bytes[index + 2] & 0x3F) << 6) | (bytes[index + 3] & 0x3F);
+					out[pos++] = Character.highSurrogate(cp);
+					out[pos++] = Character.lowSurrogate(cp);
+					index += 4;
+				}
+			}
+			else {
+				out[pos++] = REPLACEMENT_CHAR;
+				++index;
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Decode remaining bytes of `in` into `out` as much as possible, positions of both buffers are advanced.
+	 * When `endOfInput` is false, last incomplete sequence is kept in `in` for next call (streaming).
+	 *
+	 * Note: a char outside BMP is decoded as 2 chars (surrogate pair), so when `out` has only 1 free char
+	 * and next bytes are such char, this returns 0 without progress. Caller should keep at least 2 free chars.
+	 *
+	 * @return Number of decoded chars.
+	 */
+	public static int decode(@NonNull ByteBuffer in, @NonNull CharBuffer out, boolean endOfInput) {
+		// Number of chars never exceeds number of bytes
+		final int count = Math.min(in.remaining(), out.remaining());
+		final boolean wholeInput = endOfInput && count == in.remaining();
+
+		final byte[] bytes;
+		final int start;
+		if (in.hasArray()) {
+			bytes = in.array();
+			start = in.arrayOffset() + in.position();
+		}
+		else {
+			bytes = new byte[count];
+			in.duplicate().get(bytes);
+			start = 0;
+		}
+		final int end = wholeInput ? start + count : completeEnd(bytes, start, start + count);
+
+		final int charCount;
+		if (out.hasArray()) {
+			final int offset = out.arrayOffset() + out.position();
+			charCount = decode(bytes, start, end, out.array(), offset) - offset;
+			out.position(out.position() + charCount);
+		}
+		else {
+			final char[] chars = new char[end - start];
+			charCount = decode(bytes, start, end, chars, 0);
+			out.put(chars, 0, charCount);
+		}
+
+		in.position(in.position() + end - start);
+
+		// Bytes were limited to number of free chars, so a multi-byte sequence may be cut although its char fits
+		if (charCount == 0 && in.hasRemaining() && out.hasRemaining()) {
+			return decodeSequence(in, out, endOfInput);
+		}
+		return charCount;
+	}
+
+	// region: Private
+
+	// Decode only the sequence at position of `in`, return number of decoded chars
+	private static int decodeSequence(ByteBuffer in, CharBuffer out, boolean endOfInput) {
+		final int available = Math.min(4, in.remaining());
+		final byte[] bytes = new byte[available];
+		in.duplicate().get(bytes);
+
+		final int end = (endOfInput && available == in.remaining()) ? available : completeEnd(bytes, 0, available);
+		if (end == 0) {
+			// Wait for more input
+			return 0;
+		}
+
+		final int length = sequenceLength(bytes, 0, end);
+		final char[] chars = new char[2];
+		final int charCount = decode(bytes, 0, length, chars, 0);
+		if (charCount > out.remaining()) {
+			return 0;
+		}
+
+		out.put(chars, 0, charCount);
+		in.position(in.position() + length);
+		return charCount;
+	}
+
+	// Number of bytes of the sequence (or maximal invalid subpart) at given index, same as `decode()` consumes
+	private static int sequenceLength(byte[] bytes, int index, int end) {
+		final int b0 = bytes[index];
+		if (b0 >= 0 || b0 < (byte) 0xC2 || b0 >= (byte) 0xF5) {
+			return 1;
+		}
+		if (b0 < (byte) 0xE0) {
+			return (index + 1 < end && isContinuation(bytes[index + 1])) ? 2 : 1;
+		}
+
+		final int needed = b0 < (byte) 0xF0 ? 3 : 4;
+		final int low = b0 == (byte) 0xE0 ? 0xA0 : b0 == (byte) 0xF0 ? 0x90 : 0x80;
+		final int high = b0 == (byte) 0xED ? 0x9F : b0 == (byte) 0xF4 ? 0x8F : 0xBF;
+		if (index + 1 >= end || ! inRange(bytes[index + 1], low, high)) {
+			return 1;
+		}
+
+		int length = 2;
+		while (length < needed && index + length < end && isContinuation(bytes[index + length])) {
+			++length;
+		}
+		return length;
+	}
+
+	private static boolean isContinuation(byte b) {
+		return (b & 0xC0) == 0x80;
+	}
+
+	private static boolean inRange(byte b, int low, int high) {
+		final int value = b & 0xFF;
+		return value >= low && value <= high;
+	}
+
+	// End of bytes without last sequence if that sequence is cut by `end`
+	private static int completeEnd(byte[] bytes, int start, int end) {
+		for (int back = 1; back <= 3 && end - back >= start; ++back) {
+			final int b = bytes[end - back] & 0xFF;
+			if (b < 0x80) {
+				return end;
+			}
+			if (b >= 0xC0) {
+				final int needed = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+				return needed > back ? end - back : end;
+			}
+		}
+		return end;
+	}
+
+	private static class Chunks {
+		final char[] chars = new char[CHUNK_SIZE];
+		final byte[] bytes = new byte[3 * CHUNK_SIZE];
+	}
+
+	// endregion: Private
+}
@@ -29,6 +29,7 @@ import java.io.IOException
 import java.io.InputStream
 import java.io.InputStreamReader
 import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
 import java.util.*
 
 /**
@@ -108,37 +109,27 @@ object DkUtils {
 	}
 
 	fun stream2string(inputStream: InputStream): String {
-		var line: String?
-		val ls = DkConst.LS
-		val sb = StringBuilder(256)
 		try {
-			BufferedReader(InputStreamReader(inputStream)).use { br ->
-				while (br.readLine().also { line = it } != null) {
-					sb.append(line).append(ls)
-				}
-			}
+			inputStream.use { return DkFiles.loadAsString(it) }
 		}
 		catch (e: Exception) {
 			DkLogs.error(DkUtils::class.java, e)
 		}
-		return sb.toString()
+		return ""
 	}
 
 	/**
 	 * Read all content of a file under assets folder as lines.
 	 *
+	 * @param pool When provided, repeated lines are deduplicated via it, for eg,. `DkStringPool.shared()`.
 	 * @return List of line if succeed. Otherwise return Null.
 	 */
-	fun asset2lines(context: Context, fileName: String?, trim: Boolean): List<String>? {
-		val lines: MutableList<String> = ArrayList()
-		var line: String
+	@JvmOverloads
+	fun asset2lines(context: Context, fileName: String?, trim: Boolean, pool: DkStringPool? = null): List<String>? {
 		try {
-			BufferedReader(InputStreamReader(context.assets.open(fileName!!))).use { br ->
-				while (br.readLine().also { line = it } != null) {
-					lines.add(if (trim) line.trim { it <= ' ' } else line)
-				}
+			InputStreamReader(context.assets.open(fileName!!), StandardCharsets.UTF_8).use { reader ->
+				return DkFiles.readLines(reader, pool, trim)
 			}
-			return lines
 		}
 		catch (e: Exception) {
 			DkLogcats.error(DkLogcats::class.java, e)
@@ -0,0 +1,208 @@
+package tool.compet.core;
+
+/**
+ * Writes decimal digits of integer directly into char array (or byte array as ASCII),
+ * so no intermediate String is made. Two digits are written per division with lookup tables.
+ */
+class MyDigits {
+	static final char[] DIGIT_TENS = new char[100];
+	static final char[] DIGIT_ONES = new char[100];
+
+	private static final char[] LONG_MIN_CHARS = "-9223372036854775808".toCharArray();
+
+	static {
+		for (int index = 0; index < 100; ++index) {
+			DIGIT_TENS[index] = (char) ('0' + index / 10);
+			DIGIT_ONES[index] = (char) ('0' + index % 10);
+		}
+	}
+
+	private static final int[] INT_SIZE_TABLE = {9, 99, 999, 9999, 99999, 999999, 9999999, 99999999, 999999999, Integer.MAX_VALUE};
+
+	/**
+	 * @return Number of chars of given value in decimal, include minus sign.
+	 */
+	static int stringSize(int value) {
+		int sign = 0;
+		if (value < 0) {
+			if (value == Integer.MIN_VALUE) {
+				return 11;
+			}
+			value = -value;
+			sign = 1;
+		}
+		for (int index = 0; ; ++index) {
+			if (value <= INT_SIZE_TABLE[index]) {
+				return index + 1 + sign;
+			}
+		}
+	}
+
+	/**
+	 * @return Number of chars of given value in decimal, include minus sign.
+	 */
+	static int stringSize(long value) {
+		int sign = 0;
+		if (value < 0) {
+			if (value == Long.MIN_VALUE) {
+				return LONG_MIN_CHARS.length;
+			}
+			value = -value;
+			sign = 1;
+		}
+		long bound = 10;
+		for (int digitCount = 1; digitCount < 19; ++digitCount) {
+			if (value < bound) {
+				return digitCount + sign;
+			}
+			bound *= 10;
+		}
+		return 19 + sign;
+	}
+
+	/**
+	 * Write decimal chars of given value so that last char is at `end - 1`.
+	 *
+	 * @return Index of first written char.
+	 */
+	static int getChars(long value, int end, char[] buf) {
+		if (value == Long.MIN_VALUE) {
+			end -= LONG_MIN_CHARS.length;
+			System.arraycopy(LONG_MIN_CHARS, 0, buf, end, LONG_MIN_CHARS.length);
+			return end;
+		}
+
+		final boolean negative = value < 0;
+		if (negative) {
+			value = -value;
+		}
+
+		// Use int arithmetic when possible since it is faster than long
+		while (value > Integer.MAX_VALUE) {
+			int pair = (int) (value % 100);
+			value /= 100;
+			buf[--end] = DIGIT_ONES[pair];
+			buf[--end] = DIGIT_TENS[pair];
+		}
+		int rest = (int) value;
+		while (rest >= 100) {
+			int pair = rest % 100;
+			rest /= 100;
+			buf[--end] = DIGIT_ONES[pair];
+			buf[--end] = DIGIT_TENS[pair];
+		}
+		buf[--end] = DIGIT_ONES[rest];
+		if (rest >= 10) {
+			buf[--end] = DIGIT_TENS[rest];
+		}
+
+		if (negative) {
+			buf[--end] = '-';
+		}
+		return end;
+	}
+
+	/**
+	 * Same as `getChars()` but writes ASCII bytes, for eg,. into backing array of DkByteArrayList.
+	 *
+	 * @return Index of first written byte.
+	 */
+	static int getBytes(long value, int end, byte[] buf) {
+		if (value == Long.MIN_VALUE) {
+			for (int index = LONG_MIN_CHARS.length - 1; index >= 0; --index) {
+				buf[--end] = (byte) LONG_MIN_CHARS[index];
+			}
+			return end;
+		}
+
+		final boolean negative = value < 0;
+		if (negative) {
+			value = -value;
+		}
+
+		while (value > Integer.MAX_VALUE) {
+			int pair = (int) (value % 100);
+			value /= 100;
+			buf[--end] = (byte) DIGIT_ONES[pair];
+			buf[--end] = (byte) DIGIT_TENS[pair];
+		}
+		int rest = (int) value;
+		while (rest >= 100) {
+			int pair = rest % 100;
+			rest /= 100;
+			buf[--end] = (byte) DIGIT_ONES[pair];
+			buf[--end] = (byte) DIGIT_TENS[pair];
+		}
+		buf[--end] = (byte) DIGIT_ONES[rest];
+		if (rest >= 10) {
+			buf[--end] = (byte) DIGIT_TENS[rest];
+		}
+
+		if (negative) {
+			buf[--end] = '-';
+		}
+		return end;
+	}
+
+	/**
+	 * Join decimal text of first `size` elements of given array, for eg,. "[1, 2, 3]".
+	 * Length is computed first, then digits are written from end to start into exactly sized buffer.
+	 */
+	static String join(int[] arr, int size, String prefix, String delimiter, String suffix) {
+		final int delimiterLength = delimiter.length();
+
+		int length = joinedLength(size, prefix, delimiter, suffix);
+		for (int index = 0; index < size; ++index) {
+			length += stringSize(arr[index]);
+		}
+
+		final char[] buf = new char[length];
+		int pos = putEnds(buf, prefix, suffix);
+
+		for (int index = size - 1; index >= 0; --index) {
+			pos = getChars(arr[index], pos, buf);
+			if (index > 0) {
+				pos -= delimiterLength;
+				delimiter.getChars(0, delimiterLength, buf, pos);
+			}
+		}
+		return new String(buf);
+	}
+
+	/**
+	 * Same as `join(int[]...)`.
+	 */
+	static String join(long[] arr, int size, String prefix, String delimiter, String suffix) {
+		final int delimiterLength = delimiter.length();
+
+		int length = joinedLength(size, prefix, delimiter, suffix);
+		for (int index = 0; index < size; ++index) {
+			length += stringSize(arr[index]);
+		}
+
+		final char[] buf = new char[length];
+		int pos = putEnds(buf, prefix, suffix);
+
+		for (int index = size - 1; index >= 0; --index) {
+			pos = getChars(arr[index], pos, buf);
+			if (index > 0) {
+				pos -= delimiterLength;
+				delimiter.getChars(0, delimiterLength, buf, pos);
+			}
+		}
+		return new String(buf);
+	}
+
+	// Length of joined text without elements
+	private static int joinedLength(int size, String prefix, String delimiter, String suffix) {
+		return prefix.length() + suffix.length() + Math.max(0, size - 1) * delimiter.length();
+	}
+
+	// Put prefix at start and suffix at end of buffer, return start index of suffix
+	private static int putEnds(char[] buf, String prefix, String suffix) {
+		final int suffixStart = buf.length - suffix.length();
+		prefix.getChars(0, prefix.length(), buf, 0);
+		suffix.getChars(0, suffix.length(), buf, suffixStart);
+		return suffixStart;
+	}
+}
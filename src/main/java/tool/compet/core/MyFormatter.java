@@ -0,0 +1,276 @@
+package tool.compet.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fast version of `String.format(Locale.US, format, args)` for the subset which we actually use:
+ * `%s`, `%d`, `%x`, `%f`, `%.Nf`, `%n` and `%%`. Parsed patterns are cached, and result is
+ * built in a reusable thread-local StringBuilder.
+ *
+ * Other specifiers (flags, width, argument index...) or unexpected argument types
+ * fall back to `String.format`, so result and exceptions are same as it.
+ */
+class MyFormatter {
+	private static final byte CONV_STRING = 1;
+	private static final byte CONV_DECIMAL = 2;
+	private static final byte CONV_HEX = 3;
+	private static final byte CONV_FLOAT = 4;
+
+	private static final int MAX_CACHED_PATTERNS = 512;
+	private static final int MAX_REUSED_BUILDER_CAPACITY = 8 << 10;
+
+	// Marks a format which can not be handled by this
+	private static final Pattern UNSUPPORTED = new Pattern(null, null, null);
+
+	private static final ConcurrentHashMap<String, Pattern> patternCache = new ConcurrentHashMap<>();
+	private static final ThreadLocal<Buffer> threadBuffer = new ThreadLocal<Buffer>() {
+		@Override
+		protected Buffer initialValue() {
+			return new Buffer();
+		}
+	};
+
+	static String format(String format, Object... args) {
+		Pattern pattern = patternCache.get(format);
+		if (pattern == null) {
+			pattern = compile(format);
+
+			// Simple bound: most apps have limited number of log patterns
+			if (patternCache.size() >= MAX_CACHED_PATTERNS) {
+				patternCache.clear();
+			}
+			patternCache.put(format, pattern);
+		}
+
+		if (pattern == UNSUPPORTED || pattern.convs.length > args.length) {
+			return String.format(Locale.US, format, args);
+		}
+
+		// Argument's toString() can call format again, so only reuse the buffer when it is free
+		Buffer buffer = threadBuffer.get();
+		StringBuilder sb;
+		if (buffer.inUse) {
+			sb = new StringBuilder(format.length() + 32);
+		}
+		else {
+			buffer.inUse = true;
+			sb = buffer.sb;
+			sb.setLength(0);
+		}
+
+		try {
+			if (! pattern.appendTo(sb, args)) {
+				return String.format(Locale.US, format, args);
+			}
+			return sb.toString();
+		}
+		finally {
+			if (sb == buffer.sb) {
+				if (sb.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+					buffer.sb = new StringBuilder(256);
+				}
+				buffer.inUse = false;
+			}
+		}
+	}
+
+	private static Pattern compile(String format) {
+		ArrayList<String> literals = new ArrayList<>();
+		DkByteArrayList convs = new DkByteArrayList();
+		DkIntArrayList precisions = new DkIntArrayList();
+		StringBuilder literal = new StringBuilder();
+		final int N = format.length();
+
+		for (int index = 0; index < N; ++index) {
+			char ch = format.charAt(index);
+			if (ch != '%') {
+				literal.append(ch);
+				continue;
+			}
+			if (++index >= N) {
+				return UNSUPPORTED;
+			}
+
+			ch = format.charAt(index);
+			int precision = -1;
+
+			if (ch == '.') {
+				precision = 0;
+				int digitCount = 0;
+				while (++index < N && (ch = format.charAt(index)) >= '0' && ch <= '9') {
+					precision = precision * 10 + (ch - '0');
+					++digitCount;
+				}
+				// Precision is only supported for `%.Nf`
+				if (digitCount == 0 || digitCount > 2 || index >= N || ch != 'f') {
+					return UNSUPPORTED;
+				}
+			}
+
+			switch (ch) {
+				case '%': {
+					literal.append('%');
+					continue;
+				}
+				case 'n': {
+					literal.append(DkConst.LS);
+					continue;
+				}
+				case 's': {
+					convs.add(CONV_STRING);
+					break;
+				}
+				case 'd': {
+					convs.add(CONV_DECIMAL);
+					break;
+				}
+				case 'x': {
+					convs.add(CONV_HEX);
+					break;
+				}
+				case 'f': {
+					convs.add(CONV_FLOAT);
+					break;
+				}
+				default: {
+					return UNSUPPORTED;
+				}
+			}
+
+			precisions.add(precision < 0 ? 6 : precision);
+			literals.add(literal.toString());
+			literal.setLength(0);
+		}
+		literals.add(literal.toString());
+
+		return new Pattern(literals.toArray(new String[0]), convs.toArray(), precisions.toArray());
+	}
+
+	private static class Buffer {
+		StringBuilder sb = new StringBuilder(256);
+		boolean inUse;
+	}
+
+	private static class Pattern {
+		// Literal before each conversion, plus last literal
+		final String[] literals;
+		final byte[] convs;
+		final int[] precisions;
+
+		Pattern(String[] literals, byte[] convs, int[] precisions) {
+			this.literals = literals;
+			this.convs = convs;
+			this.precisions = precisions;
+		}
+
+		/**
+		 * @return FALSE if some argument type is not supported.
+		 */
+		boolean appendTo(StringBuilder sb, Object[] args) {
+			final byte[] convs = this.convs;
+			final String[] literals = this.literals;
+
+			for (int index = 0, N = convs.length; index < N; ++index) {
+				sb.append(literals[index]);
+
+				if (! appendArg(sb, convs[index], precisions[index], args[index])) {
+					return false;
+				}
+			}
+			sb.append(literals[convs.length]);
+
+			return true;
+		}
+
+		private static boolean appendArg(StringBuilder sb, byte conv, int precision, Object arg) {
+			switch (conv) {
+				case CONV_STRING: {
+					// Formattable has custom formatting
+					if (arg instanceof java.util.Formattable) {
+						return false;
+					}
+					sb.append(arg);
+					return true;
+				}
+				case CONV_DECIMAL: {
+					if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+						sb.append(((Number) arg).intValue());
+						return true;
+					}
+					if (arg instanceof Long) {
+						sb.append((long) (Long) arg);
+						return true;
+					}
+					if (arg instanceof BigInteger) {
+						sb.append(arg);
+						return true;
+					}
+					if (arg == null) {
+						sb.append("null");
+						return true;
+					}
+					return false;
+				}
+				case CONV_HEX: {
+					// Byte and Short are not supported since String.format does not sign-extend them
+					if (arg instanceof Integer) {
+						sb.append(Integer.toHexString((Integer) arg));
+						return true;
+					}
+					if (arg instanceof Long) {
+						sb.append(Long.toHexString((Long) arg));
+						return true;
+					}
+					if (arg == null) {
+						sb.append("null");
+						return true;
+					}
+					return false;
+				}
+				case CONV_FLOAT: {
+					double value;
+					if (arg instanceof Double) {
+						value = (Double) arg;
+					}
+					else if (arg instanceof Float) {
+						value = (Float) arg;
+					}
+					else if (arg == null) {
+						sb.append("null");
+						return true;
+					}
+					else {
+						return false;
+					}
+					appendFixed(sb, value, precision);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// Same as Formatter: round HALF_UP on shortest decimal representation of the value
+		private static void appendFixed(StringBuilder sb, double value, int precision) {
+			if (Double.isNaN(value)) {
+				sb.append("NaN");
+				return;
+			}
+			if (Double.isInfinite(value)) {
+				sb.append(value > 0 ? "Infinity" : "-Infinity");
+				return;
+			}
+			String fixed = new BigDecimal(Double.toString(value)).setScale(precision, RoundingMode.HALF_UP).toPlainString();
+
+			// BigDecimal has no negative zero, but Formatter keeps the sign (for eg,. -0.001 -> -0.00)
+			if ((value < 0 || (value == 0 && 1 / value < 0)) && fixed.charAt(0) != '-') {
+				sb.append('-');
+			}
+			sb.append(fixed);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-call-site rate limiter and sampler of {@link DkLogger}.
+ *
+ * Call site is identified by identity of `where` class and of the format string (literal format is interned),
+ * so hot path does not allocate. Call sites are hashed into a fixed table of slots, a colliding call site
+ * probes a few next slots, an entry is allocated only once when a call site takes an empty slot.
+ * When all probed slots are taken, the call site shares the bucket of its home slot (it is limited
+ * together with that site, and its suppressed logs are reported as that site's), entries are never evicted.
+ * Each entry is a token bucket implemented as GCRA (one CAS on a timestamp),
+ * and counts suppressed logs so the next passed log or `drainSuppressed()` can report them.
+ */
+class MyLogLimiter {
+	private static final int SLOT_COUNT = 256;
+
+	// Number of slots a call site looks at, start from its home slot
+	private static final int PROBE_COUNT = 4;
+
+	/**
+	 * Receives suppressed count of a call site which was not reported yet.
+	 */
+	interface SuppressedCallback {
+		/**
+		 * @param whereKey Class or String of `where`.
+		 * @param formatKey Format, message or lambda class of the call site.
+		 */
+		void onSuppressed(int logType, Object whereKey, Object formatKey, int count);
+	}
+
+	private final AtomicReferenceArray<Site> sites = new AtomicReferenceArray<>(SLOT_COUNT);
+
+	// Settings, kept to rebuild limiter when some setting is changed
+	final int permitsPerSecond;
+	final int burst;
+	final double sampleRate;
+
+	// Interval between two permits, and max burst time which equals to `(burst - 1) * interval`
+	private final long intervalNanos;
+	private final long burstNanos;
+
+	// Logs which have type lower than this are sampled
+	private final int sampledTypeBelow;
+
+	MyLogLimiter(int permitsPerSecond, int burst, double sampleRate, int sampledTypeBelow) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.intervalNanos = permitsPerSecond > 0 ? 1_000_000_000L / permitsPerSecond : 0;
+		this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+		this.sampleRate = sampleRate;
+		this.sampledTypeBelow = sampledTypeBelow;
+	}
+
+	/**
+	 * @return Negative if the log should be dropped. Otherwise number of suppressed logs
+	 * of this call site since last passed log.
+	 */
+	int acquire(int logType, Object whereKey, Object formatKey) {
+		if (logType < sampledTypeBelow && sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			return -1;
+		}
+		if (intervalNanos <= 0) {
+			return 0;
+		}
+
+		final int hash = System.identityHashCode(formatKey) * 31 + System.identityHashCode(whereKey);
+		final Site site = obtainSite((hash ^ (hash >>> 16)) & (SLOT_COUNT - 1), logType, whereKey, formatKey);
+
+		final long now = System.nanoTime();
+		final AtomicLong theoreticalArrival = site.theoreticalArrival;
+
+		while (true) {
+			long tat = theoreticalArrival.get();
+			if (tat - burstNanos > now) {
+				site.suppressedCount.incrementAndGet();
+				return -1;
+			}
+			if (theoreticalArrival.compareAndSet(tat, Math.max(tat, now) + intervalNanos)) {
+				return site.suppressedCount.getAndSet(0);
+			}
+		}
+	}
+
+	/**
+	 * Take suppressed counts which were not reported yet (for eg,. a burst followed by silence),
+	 * and pass each non-zero one to given callback.
+	 */
+	void drainSuppressed(SuppressedCallback callback) {
+		for (int index = 0; index < SLOT_COUNT; ++index) {
+			final Site site = sites.get(index);
+			if (site != null) {
+				final int count = site.suppressedCount.getAndSet(0);
+				if (count > 0) {
+					callback.onSuppressed(site.logType, site.whereKey, site.formatKey, count);
+				}
+			}
+		}
+	}
+
+	// region: Private
+
+	private Site obtainSite(int homeSlot, int logType, Object whereKey, Object formatKey) {
+		for (int probe = 0; probe < PROBE_COUNT; ++probe) {
+			final int slot = (homeSlot + probe) & (SLOT_COUNT - 1);
+			Site site = sites.get(slot);
+
+			if (site == null) {
+				final Site next = new Site(logType, whereKey, formatKey);
+				if (sites.compareAndSet(slot, null, next)) {
+					return next;
+				}
+				// Other thread took the slot, it may be same call site
+				site = sites.get(slot);
+			}
+			if (site.formatKey == formatKey && site.whereKey == whereKey) {
+				return site;
+			}
+		}
+
+		// Neighbourhood is full, share bucket of home slot
+		return sites.get(homeSlot);
+	}
+
+	private static class Site {
+		final int logType;
+		final Object whereKey;
+		final Object formatKey;
+		final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE / 2);
+		final AtomicInteger suppressedCount = new AtomicInteger();
+
+		Site(int logType, Object whereKey, Object formatKey) {
+			this.logType = logType;
+			this.whereKey = whereKey;
+			this.formatKey = formatKey;
+		}
+	}
+
+	// endregion: Private
+}
@@ -3,17 +3,67 @@ package tool.compet.core;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 class MyLogging {
+	// Default max number of frames of each throwable in cause chain
+	static final int DEFAULT_ERROR_DEPTH = 64;
+
+	// Guard against too long (or cyclic) cause chain
+	private static final int MAX_CAUSE_COUNT = 16;
+
+	// Number of top frames of each throwable which are used to identify a trace
+	private static final int KEY_FRAME_COUNT = 4;
+
+	// Rendered traces of recent errors, bounded by clearing when full
+	private static final int MAX_CACHED_TRACES = 256;
+	private static final ConcurrentHashMap<TraceKey, RenderedTrace> traceCache = new ConcurrentHashMap<>();
+
 	static String beautifyError(@NonNull Throwable error, @Nullable String format, Object... args) {
-		// Unwrap to get origin throwable since some exception can wrap other exception for grouping
-		Throwable originThrowable = error.getCause();
-		if (originThrowable != null) {
-			error = originThrowable;
+		return beautifyError(error, DEFAULT_ERROR_DEPTH, format, args);
+	}
+
+	/**
+	 * Render error with full cause chain like `Throwable.printStackTrace()`: frames which are
+	 * same as enclosing trace are elided as `... N more`. Frames are rendered once for
+	 * repeated identical errors, only headers (class and message) are rendered each time.
+	 *
+	 * @param maxDepth Max number of frames of each throwable in the chain.
+	 */
+	static String beautifyError(@NonNull Throwable error, int maxDepth, @Nullable String format, Object... args) {
+		// Collect cause chain, stop at cycle
+		Throwable[] chain = new Throwable[MAX_CAUSE_COUNT];
+		int chainSize = 0;
+		collect:
+		for (Throwable cause = error; cause != null && chainSize < MAX_CAUSE_COUNT; cause = cause.getCause()) {
+			for (int index = 0; index < chainSize; ++index) {
+				if (chain[index] == cause) {
+					break collect;
+				}
+			}
+			chain[chainSize++] = cause;
+		}
+
+		StackTraceElement[][] traces = new StackTraceElement[chainSize][];
+		for (int index = 0; index < chainSize; ++index) {
+			traces[index] = chain[index].getStackTrace();
+		}
+
+		TraceKey key = new TraceKey(chain, traces, chainSize, maxDepth);
+		RenderedTrace rendered = traceCache.get(key);
+
+		// Key only contains top frames, so check whole traces
+		if (rendered == null || ! rendered.isSameTraces(traces)) {
+			rendered = new RenderedTrace(traces, maxDepth);
+
+			if (traceCache.size() >= MAX_CACHED_TRACES) {
+				traceCache.clear();
+			}
+			traceCache.put(key, rendered);
 		}
 
-		StringBuilder sb = new StringBuilder(256);
+		StringBuilder sb = new StringBuilder(rendered.length + 128 * chainSize);
 
 		if (format != null) {
 			if (args != null) {
@@ -22,21 +72,174 @@ class MyLogging {
 			sb.append("Message: ").append(format).append(DkConst.LS);
 		}
 
-		sb.append(error.toString()).append(DkConst.LS);
-
-		for (StackTraceElement traceElement : error.getStackTrace()) {
-			sb.append("\tat ").append(traceElement).append(DkConst.LS);
+		for (int index = 0; index < chainSize; ++index) {
+			if (index > 0) {
+				sb.append("Caused by: ");
+			}
+			sb.append(chain[index].toString()).append(DkConst.LS);
+			sb.append(rendered.blocks[index]);
 		}
 
 		return sb.toString();
 	}
 
+	/**
+	 * Identifies a trace by class and top frames of each throwable in the chain.
+	 */
+	private static class TraceKey {
+		final Class<?>[] classes;
+		final StackTraceElement[] topFrames;
+		final int maxDepth;
+		final int hash;
+
+		TraceKey(Throwable[] chain, StackTraceElement[][] traces, int chainSize, int maxDepth) {
+			this.classes = new Class<?>[chainSize];
+			this.topFrames = new StackTraceElement[chainSize * KEY_FRAME_COUNT];
+			this.maxDepth = maxDepth;
+
+			for (int index = 0; index < chainSize; ++index) {
+				classes[index] = chain[index].getClass();
+				StackTraceElement[] trace = traces[index];
+				System.arraycopy(trace, 0, topFrames, index * KEY_FRAME_COUNT, Math.min(KEY_FRAME_COUNT, trace.length));
+			}
+
+			this.hash = (Arrays.hashCode(classes) * 31 + Arrays.hashCode(topFrames)) * 31 + maxDepth;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (! (o instanceof TraceKey)) {
+				return false;
+			}
+			TraceKey other = (TraceKey) o;
+			return hash == other.hash
+				&& maxDepth == other.maxDepth
+				&& Arrays.equals(classes, other.classes)
+				&& Arrays.equals(topFrames, other.topFrames);
+		}
+	}
+
+	/**
+	 * Rendered frames of each throwable in the chain.
+	 */
+	private static class RenderedTrace {
+		final StackTraceElement[][] traces;
+		final String[] blocks;
+		final int length;
+
+		RenderedTrace(StackTraceElement[][] traces, int maxDepth) {
+			this.traces = traces;
+			this.blocks = new String[traces.length];
+
+			int length = 0;
+			StringBuilder sb = new StringBuilder(1024);
+
+			for (int index = 0; index < traces.length; ++index) {
+				StackTraceElement[] trace = traces[index];
+
+				// Frames in common with enclosing trace, counted from bottom
+				int commonCount = 0;
+				if (index > 0) {
+					StackTraceElement[] enclosing = traces[index - 1];
+					int m = trace.length - 1;
+					int n = enclosing.length - 1;
+					while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+						--m;
+						--n;
+					}
+					commonCount = trace.length - 1 - m;
+				}
+
+				final int shownCount = Math.min(trace.length - commonCount, maxDepth);
+				sb.setLength(0);
+
+				for (int frameIndex = 0; frameIndex < shownCount; ++frameIndex) {
+					sb.append("\tat ").append(trace[frameIndex]).append(DkConst.LS);
+				}
+				if (shownCount < trace.length) {
+					sb.append("\t... ").append(trace.length - shownCount).append(" more").append(DkConst.LS);
+				}
+
+				blocks[index] = sb.toString();
+				length += sb.length();
+			}
+
+			this.length = length;
+		}
+
+		boolean isSameTraces(StackTraceElement[][] traces) {
+			if (this.traces.length != traces.length) {
+				return false;
+			}
+			for (int index = traces.length - 1; index >= 0; --index) {
+				if (! Arrays.equals(this.traces[index], traces[index])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	// Formatted frame cache, frames of an app are limited so this is bounded by clearing when full
+	private static final int MAX_CACHED_FRAMES = 4096;
+	private static final ConcurrentHashMap<StackTraceElement, String> frameCache = new ConcurrentHashMap<>();
+
 	static String beautifyBacktrace() {
-		ArrayList<String> descriptions = new ArrayList<>();
-		for (StackTraceElement elm : Thread.currentThread().getStackTrace()) {
-			String description = DkStrings.format("%s (%d) ==> %s.%s()", elm.getFileName(), elm.getLineNumber(), elm.getClassName(), elm.getMethodName());
-			descriptions.add(description);
+		return beautifyBacktrace(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Capture back trace of current thread, skip frames of logging itself.
+	 *
+	 * @param maxDepth Max number of frames to format.
+	 */
+	static String beautifyBacktrace(int maxDepth) {
+		// Cheaper than Thread.getStackTrace() since no thread-state check is needed
+		StackTraceElement[] frames = new Throwable().getStackTrace();
+		StringBuilder sb = new StringBuilder(64 + 64 * Math.min(maxDepth, frames.length));
+		sb.append("\nStack Trace:");
+
+		int index = 0;
+		final int N = frames.length;
+		while (index < N && isLoggingFrame(frames[index].getClassName())) {
+			++index;
+		}
+
+		for (int depth = 0; index < N && depth < maxDepth; ++index, ++depth) {
+			sb.append('\n').append(describeFrame(frames[index]));
+		}
+		if (index < N) {
+			sb.append("\n... ").append(N - index).append(" more");
 		}
-		return "\nStack Trace:\n" + DkStrings.join('\n', descriptions);
+
+		return sb.toString();
+	}
+
+	private static String describeFrame(StackTraceElement frame) {
+		String description = frameCache.get(frame);
+		if (description == null) {
+			description = frame.getFileName() + " (" + frame.getLineNumber() + ") ==> " + frame.getClassName() + '.' + frame.getMethodName() + "()";
+
+			if (frameCache.size() >= MAX_CACHED_FRAMES) {
+				frameCache.clear();
+			}
+			frameCache.put(frame, description);
+		}
+		return description;
+	}
+
+	private static boolean isLoggingFrame(String className) {
+		return className.startsWith("tool.compet.core.DkLog")
+			|| className.startsWith("tool.compet.core.MyLogging")
+			|| className.equals("java.lang.Thread")
+			|| className.equals("dalvik.system.VMStack");
 	}
 }
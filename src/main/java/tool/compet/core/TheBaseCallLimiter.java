@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017-2021 DarkCompet. All rights reserved.
+ */
+
+package tool.compet.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base of call-collapsing schedulers: {@link DkDebouncer}, {@link DkThrottler}, {@link DkCoalescer}.
+ *
+ * Call path only touches atomic fields, at most one fire is scheduled at a time,
+ * and the action is run on a thread of given scheduler.
+ *
+ * Fire, `flush()` and `cancel()` are run under lock of this object, so actions never overlap,
+ * and a fire which was scheduled before `flush()` or `cancel()` is ignored when it comes.
+ */
+public abstract class TheBaseCallLimiter<T> {
+	// Marks no pending argument (so caller can pass null as argument)
+	protected static final Object NONE = new Object();
+
+	protected final DkRunner1<T> action;
+	protected final long windowNanos;
+	protected final ScheduledExecutorService scheduler;
+
+	// Source of time of windows, for eg,. `DkClock.Manual` in unit test
+	protected final DkClock clock;
+
+	// Pending argument, or `NONE`
+	protected final AtomicReference<Object> pending = new AtomicReference<>(NONE);
+
+	// TRUE while a fire was scheduled and not yet run
+	protected final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private volatile ScheduledFuture<?> future;
+
+	// Increased when scheduled fire is cancelled, so fire of old generation is ignored
+	private volatile int generation;
+
+	protected TheBaseCallLimiter(long window, TimeUnit unit, @NonNull DkRunner1<T> action,
+		@NonNull ScheduledExecutorService scheduler, @NonNull DkClock clock) {
+
+		this.windowNanos = unit.toNanos(window);
+		this.action = action;
+		this.scheduler = scheduler;
+		this.clock = clock;
+	}
+
+	/**
+	 * Called (under lock) when scheduled time comes.
+	 */
+	protected abstract void onFire();
+
+	/**
+	 * Run pending call (if exists) immediately on caller thread, for eg,. at `onPause()`.
+	 * If action is running on scheduler thread, this waits for it first.
+	 */
+	public synchronized void flush() {
+		cancelScheduled();
+		runPending();
+	}
+
+	/**
+	 * Drop pending call (if exists). If action is running on scheduler thread, this waits for it,
+	 * so after this returns, no action of this is running or going to run for previous calls.
+	 */
+	public synchronized void cancel() {
+		cancelScheduled();
+		pending.set(NONE);
+	}
+
+	protected void schedule(long delayNanos) {
+		final int generation = this.generation;
+		future = scheduler.schedule(() -> fire(generation), delayNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Take pending argument and run action with it.
+	 *
+	 * @return TRUE if action was run.
+	 */
+	@SuppressWarnings("unchecked")
+	protected boolean runPending() {
+		Object arg = pending.getAndSet(NONE);
+		if (arg == NONE) {
+			return false;
+		}
+		try {
+			action.run((T) arg);
+		}
+		catch (Exception e) {
+			DkLogs.error(this, e, "Action was failed");
+		}
+		return true;
+	}
+
+	private synchronized void fire(int generation) {
+		// Was cancelled by `flush()` or `cancel()`
+		if (generation != this.generation) {
+			return;
+		}
+		onFire();
+	}
+
+	private void cancelScheduled() {
+		++generation;
+
+		ScheduledFuture<?> future = this.future;
+		if (future != null) {
+			future.cancel(false);
+		}
+		scheduled.set(false);
+	}
+}
@@ -0,0 +1,76 @@
+package tool.compet.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DkCoalescerTest {
+	private final FakeScheduler scheduler = new FakeScheduler();
+	private final List<List<Integer>> runs = new ArrayList<>();
+
+	// Merger returns new list, since it may be called again for same value under contention
+	private final DkCoalescer<Integer, List<Integer>> coalescer = new DkCoalescer<>(100, TimeUnit.MILLISECONDS, (merged, value) -> {
+		List<Integer> result = merged == null ? new ArrayList<>() : new ArrayList<>(merged);
+		result.add(value);
+		return result;
+	}, runs::add, scheduler, scheduler.clock);
+
+	@Test
+	public void callsOfWindowAreMerged() {
+		coalescer.call(1);
+		scheduler.advance(40, TimeUnit.MILLISECONDS);
+		coalescer.call(2);
+		scheduler.advance(50, TimeUnit.MILLISECONDS);
+		coalescer.call(3);
+		assertEquals(Arrays.asList(1, 2, 3), coalescer.peekPending());
+
+		// Window is counted from first call, later calls do not extend it
+		scheduler.advance(10, TimeUnit.MILLISECONDS);
+		assertEquals(1, runs.size());
+		assertEquals(Arrays.asList(1, 2, 3), runs.get(0));
+		assertNull(coalescer.peekPending());
+	}
+
+	@Test
+	public void nextWindowStartsAtNextCall() {
+		coalescer.call(1);
+		scheduler.advance(150, TimeUnit.MILLISECONDS);
+		coalescer.call(2);
+		scheduler.advance(99, TimeUnit.MILLISECONDS);
+		assertEquals(1, runs.size());
+
+		scheduler.advance(1, TimeUnit.MILLISECONDS);
+		assertEquals(2, runs.size());
+		assertEquals(Arrays.asList(2), runs.get(1));
+	}
+
+	@Test
+	public void concurrentCallersAreAllMerged() throws InterruptedException {
+		final List<Integer> sums = new ArrayList<>();
+		final DkCoalescer<Integer, Integer> counter = new DkCoalescer<>(100, TimeUnit.MILLISECONDS,
+			(sum, value) -> sum == null ? value : sum + value, sums::add, scheduler, scheduler.clock);
+
+		final Thread[] threads = new Thread[8];
+		for (int index = 0; index < threads.length; ++index) {
+			threads[index] = new Thread(() -> {
+				for (int call = 0; call < 1000; ++call) {
+					counter.call(1);
+				}
+			});
+			threads[index].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		scheduler.advance(100, TimeUnit.MILLISECONDS);
+		assertEquals(1, sums.size());
+		assertEquals(8000, (int) sums.get(0));
+	}
+}
@@ -0,0 +1,78 @@
+package tool.compet.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DkCsvReaderTest {
+	// Same as size of char buffer of reader
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	@Test
+	public void multiByteCharAtEndOfBuffer() throws IOException {
+		final String head = repeat('a', BUFFER_SIZE - 1) + "中";
+		final StringBuilder sb = new StringBuilder(head);
+		for (int index = 0; index < 50_000; ++index) {
+			sb.append('\n').append(index).append(",x");
+		}
+		final DkCsvReader reader = readerOf(sb.toString());
+
+		assertTrue(reader.nextRow());
+		assertEquals(1, reader.fieldCount());
+		assertEquals(head, reader.fieldAsString(0, null));
+
+		for (int index = 0; index < 50_000; ++index) {
+			assertTrue(reader.nextRow());
+			assertEquals(index, reader.intField(0, -1));
+			assertEquals("x", reader.fieldAsString(1, null));
+		}
+		assertFalse(reader.nextRow());
+	}
+
+	@Test
+	public void multiByteCharAtEndOfInput() throws IOException {
+		// Row is not split when input ends right after a char which crosses buffer boundary
+		for (String tail : new String[] {"é", "中", "😀"}) {
+			final String row = repeat('a', BUFFER_SIZE - 1) + tail;
+			final DkCsvReader reader = readerOf(row);
+
+			assertTrue(reader.nextRow());
+			assertEquals(1, reader.fieldCount());
+			assertEquals(row, reader.fieldAsString(0, null));
+			assertFalse(reader.nextRow());
+		}
+	}
+
+	@Test
+	public void quotedFieldCrossesBuffer() throws IOException {
+		final String value = repeat('b', BUFFER_SIZE + 10) + "\"中,\n";
+		final String quoted = "\"" + value.replace("\"", "\"\"") + "\"";
+		final DkCsvReader reader = readerOf("1," + quoted + ",2\r\n3,4,5");
+
+		assertTrue(reader.nextRow());
+		assertEquals(3, reader.fieldCount());
+		assertEquals(value, reader.fieldAsString(1, null));
+		assertEquals(2, reader.intField(2, -1));
+
+		assertTrue(reader.nextRow());
+		assertEquals(3, reader.intField(0, -1));
+		assertFalse(reader.nextRow());
+	}
+
+	private static DkCsvReader readerOf(String text) {
+		return new DkCsvReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), ',');
+	}
+
+	private static String repeat(char c, int count) {
+		final char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,157 @@
+package tool.compet.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DkDebouncerTest {
+	private final FakeScheduler scheduler = new FakeScheduler();
+	private final List<Integer> runs = new ArrayList<>();
+	private final DkDebouncer<Integer> debouncer = new DkDebouncer<>(100, TimeUnit.MILLISECONDS, runs::add, scheduler, scheduler.clock);
+
+	@Test
+	public void burstRunsOnceWithLastArgument() {
+		for (int arg = 1; arg <= 5; ++arg) {
+			debouncer.call(arg);
+			scheduler.advance(30, TimeUnit.MILLISECONDS);
+		}
+		// Window is restarted by each call
+		scheduler.advance(69, TimeUnit.MILLISECONDS);
+		assertEquals(0, runs.size());
+
+		scheduler.advance(1, TimeUnit.MILLISECONDS);
+		assertEquals(1, runs.size());
+		assertEquals(5, (int) runs.get(0));
+
+		scheduler.advance(1, TimeUnit.SECONDS);
+		assertEquals(1, runs.size());
+		assertEquals(0, scheduler.pendingCount());
+	}
+
+	@Test
+	public void separatedBurstsRunSeparately() {
+		debouncer.call(1);
+		debouncer.call(2);
+		scheduler.advance(150, TimeUnit.MILLISECONDS);
+		debouncer.call(3);
+		scheduler.advance(150, TimeUnit.MILLISECONDS);
+
+		assertEquals(2, runs.size());
+		assertEquals(2, (int) runs.get(0));
+		assertEquals(3, (int) runs.get(1));
+	}
+
+	@Test
+	public void flushAndCancel() {
+		debouncer.call(1);
+		debouncer.flush();
+		assertEquals(1, runs.size());
+
+		debouncer.call(2);
+		debouncer.cancel();
+		scheduler.advance(1, TimeUnit.SECONDS);
+		assertEquals(1, runs.size());
+	}
+
+	@Test
+	public void concurrentCallersRunOnce() throws InterruptedException {
+		final int threadCount = 8;
+		final int callCount = 1000;
+		final Thread[] threads = new Thread[threadCount];
+
+		for (int index = 0; index < threadCount; ++index) {
+			final int base = index * callCount;
+			threads[index] = new Thread(() -> {
+				for (int call = 0; call < callCount; ++call) {
+					debouncer.call(base + call);
+				}
+			});
+			threads[index].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		scheduler.advance(100, TimeUnit.MILLISECONDS);
+		assertEquals(1, runs.size());
+		// Argument is last call of some thread
+		assertTrue(runs.get(0) % callCount == callCount - 1);
+		assertEquals(0, scheduler.pendingCount());
+	}
+
+	@Test
+	public void cancelWaitsForRunningFire() throws InterruptedException {
+		final Race race = new Race();
+		race.debouncer.call(1);
+		race.startFire();
+
+		final Thread canceller = new Thread(race.debouncer::cancel);
+		canceller.start();
+		canceller.join(200);
+		assertTrue("cancel() must wait for running action", canceller.isAlive());
+		assertFalse(race.finished);
+
+		race.release.countDown();
+		canceller.join();
+		race.fireThread.join();
+		assertTrue(race.finished);
+		assertEquals(1, race.runs.size());
+	}
+
+	@Test
+	public void flushDuringFireDoesNotRunAgain() throws InterruptedException {
+		final Race race = new Race();
+		race.debouncer.call(1);
+		race.startFire();
+
+		final Thread flusher = new Thread(race.debouncer::flush);
+		flusher.start();
+		flusher.join(200);
+		assertTrue("flush() must wait for running action", flusher.isAlive());
+
+		race.release.countDown();
+		flusher.join();
+		race.fireThread.join();
+		assertEquals(1, race.runs.size());
+		assertEquals(1, (int) race.runs.get(0));
+	}
+
+	/**
+	 * Debouncer whose action blocks on scheduler thread until released.
+	 */
+	private static class Race {
+		final FakeScheduler scheduler = new FakeScheduler();
+		final List<Integer> runs = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		volatile boolean finished;
+		Thread fireThread;
+
+		final DkDebouncer<Integer> debouncer = new DkDebouncer<>(100, TimeUnit.MILLISECONDS, arg -> {
+			runs.add(arg);
+			started.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finished = true;
+		}, scheduler, scheduler.clock);
+
+		// Fire on other thread, and wait until action started
+		void startFire() throws InterruptedException {
+			fireThread = new Thread(() -> scheduler.advance(100, TimeUnit.MILLISECONDS));
+			fireThread.start();
+			started.await();
+		}
+	}
+}
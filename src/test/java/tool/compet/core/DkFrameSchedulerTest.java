@@ -0,0 +1,89 @@
+package tool.compet.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DkFrameSchedulerTest {
+	private static final long FRAME_MILLIS = 16;
+
+	private final FakeScheduler scheduler = new FakeScheduler();
+	private final List<Integer> runs = new ArrayList<>();
+
+	// Frame is ticked every 16 ms, budget is 4 ms
+	private final DkFrameScheduler frameScheduler = new DkFrameScheduler(
+		frame -> scheduler.schedule(frame, FRAME_MILLIS, TimeUnit.MILLISECONDS),
+		scheduler.clock,
+		TimeUnit.MILLISECONDS.toNanos(4)
+	);
+
+	@Test
+	public void budgetIsHonouredAndRestCarriesOver() {
+		for (int index = 0; index < 10; ++index) {
+			postTask(index, 1);
+		}
+		assertEquals(0, runs.size());
+
+		// Each task takes 1 ms, so 4 tasks fit in budget of a frame
+		nextFrame();
+		assertEquals(4, runs.size());
+		assertEquals(6, frameScheduler.pendingCount());
+
+		nextFrame();
+		assertEquals(8, runs.size());
+
+		nextFrame();
+		assertEquals(10, runs.size());
+		assertEquals(0, frameScheduler.pendingCount());
+
+		// Tasks are run in posted order
+		for (int index = 0; index < 10; ++index) {
+			assertEquals(index, (int) runs.get(index));
+		}
+
+		// No more frame is requested when queue is empty
+		assertEquals(0, scheduler.pendingCount());
+	}
+
+	@Test
+	public void atLeastOneTaskPerFrame() {
+		postTask(0, 10);
+		postTask(1, 10);
+
+		nextFrame();
+		assertEquals(1, runs.size());
+
+		nextFrame();
+		assertEquals(2, runs.size());
+	}
+
+	@Test
+	public void budgetChangeAppliesToNextFrame() {
+		for (int index = 0; index < 6; ++index) {
+			postTask(index, 1);
+		}
+		frameScheduler.setBudget(2, TimeUnit.MILLISECONDS);
+
+		nextFrame();
+		assertEquals(2, runs.size());
+
+		frameScheduler.setBudget(8, TimeUnit.MILLISECONDS);
+		nextFrame();
+		assertEquals(6, runs.size());
+	}
+
+	private void postTask(int id, long costMillis) {
+		frameScheduler.post(() -> {
+			scheduler.clock.advance(costMillis, TimeUnit.MILLISECONDS);
+			runs.add(id);
+		});
+	}
+
+	private void nextFrame() {
+		scheduler.advance(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+	}
+}
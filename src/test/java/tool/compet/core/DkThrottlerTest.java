@@ -0,0 +1,86 @@
+package tool.compet.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DkThrottlerTest {
+	private static final long WINDOW_MILLIS = 100;
+
+	private final FakeScheduler scheduler = new FakeScheduler();
+	private final List<Integer> runs = new ArrayList<>();
+	private final List<Long> runMillis = new ArrayList<>();
+	private final DkThrottler<Integer> throttler = new DkThrottler<>(WINDOW_MILLIS, TimeUnit.MILLISECONDS, arg -> {
+		runs.add(arg);
+		runMillis.add(scheduler.clock.nowMillis());
+	}, scheduler, scheduler.clock);
+
+	@Test
+	public void firstCallRunsImmediately() {
+		throttler.call(1);
+		scheduler.advance(0, TimeUnit.MILLISECONDS);
+
+		assertEquals(1, runs.size());
+		assertEquals(1, (int) runs.get(0));
+	}
+
+	@Test
+	public void callsWithinWindowRunOnceWithLastArgument() {
+		throttler.call(1);
+		scheduler.advance(10, TimeUnit.MILLISECONDS);
+		throttler.call(2);
+		throttler.call(3);
+		scheduler.advance(50, TimeUnit.MILLISECONDS);
+		throttler.call(4);
+
+		scheduler.advance(39, TimeUnit.MILLISECONDS);
+		assertEquals(1, runs.size());
+
+		scheduler.advance(1, TimeUnit.MILLISECONDS);
+		assertEquals(2, runs.size());
+		assertEquals(4, (int) runs.get(1));
+		assertEquals(WINDOW_MILLIS, (long) runMillis.get(1));
+	}
+
+	@Test
+	public void atMostOnePerWindow() {
+		// Call every 10 ms during 1 second
+		for (int arg = 0; arg < 100; ++arg) {
+			throttler.call(arg);
+			scheduler.advance(10, TimeUnit.MILLISECONDS);
+		}
+		scheduler.advance(1, TimeUnit.SECONDS);
+
+		assertEquals(11, runs.size());
+		for (int index = 1; index < runMillis.size(); ++index) {
+			assertTrue(runMillis.get(index) - runMillis.get(index - 1) >= WINDOW_MILLIS);
+		}
+		assertEquals(99, (int) runs.get(runs.size() - 1));
+	}
+
+	@Test
+	public void concurrentCallersRunOnce() throws InterruptedException {
+		final Thread[] threads = new Thread[8];
+		for (int index = 0; index < threads.length; ++index) {
+			final int arg = index;
+			threads[index] = new Thread(() -> {
+				for (int call = 0; call < 1000; ++call) {
+					throttler.call(arg);
+				}
+			});
+			threads[index].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1, scheduler.pendingCount());
+		scheduler.advance(0, TimeUnit.MILLISECONDS);
+		assertEquals(1, runs.size());
+	}
+}
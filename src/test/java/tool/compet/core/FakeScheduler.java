@@ -0,0 +1,165 @@
+package tool.compet.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler which runs tasks on test thread only when test advances its manual clock,
+ * so time-based classes can be tested without sleeping.
+ */
+class FakeScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+	final DkClock.Manual clock = new DkClock.Manual(0);
+	private final List<Task> tasks = new ArrayList<>();
+
+	/**
+	 * Advance clock step by step (to due time of each task), and run tasks which are due.
+	 * Tasks can also advance the clock to simulate their running time.
+	 */
+	void advance(long amount, TimeUnit unit) {
+		final long end = clock.nowNanos() + unit.toNanos(amount);
+		while (true) {
+			final Task task = nextDue(end);
+			if (task == null) {
+				break;
+			}
+			if (task.dueNanos > clock.nowNanos()) {
+				clock.advance(task.dueNanos - clock.nowNanos(), TimeUnit.NANOSECONDS);
+			}
+			task.run();
+		}
+		if (end > clock.nowNanos()) {
+			clock.advance(end - clock.nowNanos(), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	synchronized int pendingCount() {
+		return tasks.size();
+	}
+
+	@Override
+	public synchronized ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		final Task task = new Task(command, clock.nowNanos() + unit.toNanos(delay));
+		tasks.add(task);
+		return task;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		schedule(command, 0, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void shutdown() {
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return new ArrayList<>();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return false;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return false;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) {
+		return true;
+	}
+
+	// Earliest task which is due at or before given time, it is removed from pending tasks
+	private synchronized Task nextDue(long endNanos) {
+		Task result = null;
+		for (Task task : tasks) {
+			if (task.dueNanos <= endNanos && (result == null || task.dueNanos < result.dueNanos)) {
+				result = task;
+			}
+		}
+		tasks.remove(result);
+		return result;
+	}
+
+	private class Task implements ScheduledFuture<Object> {
+		final Runnable command;
+		final long dueNanos;
+		volatile boolean cancelled;
+		volatile boolean done;
+
+		Task(Runnable command, long dueNanos) {
+			this.command = command;
+			this.dueNanos = dueNanos;
+		}
+
+		void run() {
+			if (! cancelled) {
+				command.run();
+			}
+			done = true;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(dueNanos - clock.nowNanos(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			synchronized (FakeScheduler.this) {
+				tasks.remove(this);
+			}
+			cancelled = true;
+			return ! done;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isDone() {
+			return done || cancelled;
+		}
+
+		@Override
+		public Object get() {
+			return null;
+		}
+
+		@Override
+		public Object get(long timeout, TimeUnit unit) {
+			return null;
+		}
+	}
+}